@@ -0,0 +1,156 @@
+package com.caloria.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * Configuración de los ejecutores para trabajo asíncrono.
+ *
+ * Las peticiones que esperan a un asistente de IA (a menudo más de 10 s)
+ * se ejecutan en un pool propio y acotado, de modo que no ocupan los hilos
+ * de Tomcat y no bloquean al resto de endpoints.
+ *
+ * Con {@code spring.threads.virtual.enabled=true} en Java 21 (perfil Maven
+ * {@code java21}) los ejecutores usan hilos virtuales: cada tarea bloqueada
+ * en OkHttp o en el driver de MongoDB deja libre su hilo portador, y el límite
+ * pasa a ser de tareas en curso en lugar de hilos.
+ *
+ * También habilita las tareas programadas ({@code @Scheduled}).
+ */
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    /**
+     * Ejecutor dedicado a las peticiones que consultan a la IA (hilos de plataforma).
+     *
+     * Con la cola llena rechaza nuevas tareas en lugar de encolarlas sin límite;
+     * el rechazo se traduce en un 503 con {@code Retry-After}.
+     *
+     * @param hilos Número de hilos del pool ({@code ia.executor.hilos})
+     * @param cola Capacidad de la cola de espera ({@code ia.executor.cola})
+     * @return Ejecutor acotado para tareas de IA
+     */
+    @Bean(name = "iaExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Executor iaExecutor(@Value("${ia.executor.hilos:32}") int hilos,
+                               @Value("${ia.executor.cola:100}") int cola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(cola);
+        executor.setThreadNamePrefix("ia-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Ejecutor para las peticiones de IA sobre hilos virtuales.
+     *
+     * Un hilo virtual por tarea, con un máximo de {@code ia.executor.virtual.max-en-curso}
+     * tareas simultáneas; por encima de ese número se rechaza igual que con el pool.
+     *
+     * @param maxEnCurso Máximo de tareas de IA en curso
+     * @return Ejecutor acotado sobre hilos virtuales
+     */
+    @Bean(name = "iaExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor iaExecutorVirtual(@Value("${ia.executor.virtual.max-en-curso:5000}") int maxEnCurso) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ia-");
+        executor.setVirtualThreads(true);
+        return acotado(executor, maxEnCurso);
+    }
+
+    /**
+     * Ejecutor de los hilos consumidores de la persistencia de comidas
+     * ({@code PersistenciaComidaService}): uno por hilo consumidor.
+     *
+     * @param hilos Número de hilos del pool ({@code persistencia.workers})
+     * @return Pool de hilos de plataforma
+     */
+    @Bean(name = "tareasExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Executor tareasExecutor(@Value("${persistencia.workers:2}") int hilos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setThreadNamePrefix("tareas-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Ejecutor de los hilos consumidores de la persistencia sobre hilos virtuales.
+     *
+     * @return Ejecutor con un hilo virtual por tarea
+     */
+    @Bean(name = "tareasExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor tareasExecutorVirtual() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("tareas-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /**
+     * Ejecutor de los hash de contraseñas (BCrypt), aislado del resto.
+     *
+     * BCrypt consume CPU a propósito: con tantos hilos como núcleos y una cola
+     * acotada, una ráfaga de logins no puede quitar la CPU al resto de peticiones;
+     * con la cola llena se rechaza (503). Usa hilos de plataforma también con
+     * hilos virtuales activados, porque el trabajo no se bloquea.
+     *
+     * @param hilos Número de hilos ({@code hash.executor.hilos}; 0 = núcleos disponibles)
+     * @param cola Capacidad de la cola de espera ({@code hash.executor.cola})
+     * @return Pool acotado para los hash de contraseñas
+     */
+    @Bean(name = "hashExecutor")
+    public ThreadPoolTaskExecutor hashExecutor(@Value("${hash.executor.hilos:0}") int hilos,
+                                               @Value("${hash.executor.cola:50}") int cola) {
+        int n = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(n);
+        executor.setMaxPoolSize(n);
+        executor.setQueueCapacity(cola);
+        executor.setThreadNamePrefix("hash-");
+        return executor;
+    }
+
+    /**
+     * Limita el número de tareas en curso de un ejecutor sin cola: si no hay
+     * permiso libre, la tarea se rechaza con {@link TaskRejectedException}.
+     */
+    private static Executor acotado(Executor delegado, int maxEnCurso) {
+        Semaphore permisos = new Semaphore(maxEnCurso);
+        return tarea -> {
+            if (!permisos.tryAcquire()) {
+                throw new TaskRejectedException("Límite de " + maxEnCurso + " tareas de IA en curso alcanzado");
+            }
+            try {
+                delegado.execute(() -> {
+                    try {
+                        tarea.run();
+                    } finally {
+                        permisos.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permisos.release();
+                throw e;
+            }
+        };
+    }
+}
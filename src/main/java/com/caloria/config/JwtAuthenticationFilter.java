@@ -55,14 +55,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            if (jwtService.isValid(token)) {
-                String usuarioId = jwtService.getUsuarioId(token);
+            // Verificación y extracción en una sola llamada (con caché de tokens ya verificados)
+            jwtService.verificar(token).ifPresent(usuarioId -> {
                 User principal = new User(usuarioId, "", List.of());
                 var auth = new UsernamePasswordAuthenticationToken(
                     principal, null, principal.getAuthorities()
                 );
                 SecurityContextHolder.getContext().setAuthentication(auth);
-            }
+            });
         }
 
         chain.doFilter(request, response);
@@ -1,9 +1,11 @@
 package com.caloria.config;
 
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,6 +16,8 @@ import org.springframework.context.annotation.Configuration;
  * Este cliente:
  * - Agrega el header `OpenAI-Beta: assistants=v2` requerido por la API.
  * - Intercepta respuestas JSON para asegurar la presencia del campo `file_ids` en determinadas rutas.
+ * - Si se define `openai.base-url`, redirige las peticiones a ese servidor
+ *   (p. ej. un servidor simulado local para pruebas).
  *
  * Es utilizado por el servicio `IAService` para interactuar con los asistentes de OpenAI.
  */
@@ -27,18 +31,30 @@ public class OkHttpClientConfig {
      *
      * - Añade un header necesario para habilitar la versión v2 de Assistants.
      * - Si la respuesta JSON de ciertos endpoints no contiene `file_ids`, lo inyecta.
+     * - Si `openai.base-url` no está vacío, sustituye esquema, host y puerto de la URL.
      *
+     * @param baseUrl URL base alternativa de la API (vacía para usar la de OpenAI)
      * @return Cliente OkHttp personalizado para IA
      */
     @Bean
-    public OkHttpClient okHttpClientWithHeader() {
+    public OkHttpClient okHttpClientWithHeader(@Value("${openai.base-url:}") String baseUrl) {
+        HttpUrl destino = baseUrl.isBlank() ? null : HttpUrl.get(baseUrl);
         return new OkHttpClient.Builder()
                 .addInterceptor(chain -> {
                     // Agregar el header requerido para usar la versión v2 de Assistants
                     Request original = chain.request();
-                    Request requestWithHeader = original.newBuilder()
-                            .header("OpenAI-Beta", "assistants=v2")
-                            .build();
+                    Request.Builder builder = original.newBuilder()
+                            .header("OpenAI-Beta", "assistants=v2");
+
+                    // Redirigir a la URL base configurada, conservando la ruta
+                    if (destino != null) {
+                        builder.url(original.url().newBuilder()
+                                .scheme(destino.scheme())
+                                .host(destino.host())
+                                .port(destino.port())
+                                .build());
+                    }
+                    Request requestWithHeader = builder.build();
 
                     Response response = chain.proceed(requestWithHeader);
                     String url = requestWithHeader.url().toString();
@@ -1,6 +1,8 @@
 package com.caloria.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -29,11 +31,15 @@ public class SecurityConfig {
      * Codificador de contraseñas basado en BCrypt.
      * Utilizado para almacenar y verificar contraseñas en la base de datos.
      *
+     * Se usa a través de {@code HashContrasenasService}, que ejecuta cada hash
+     * en un pool acotado y vuelve a cifrar en el login las contraseñas con otro coste.
+     *
+     * @param coste Factor de coste de BCrypt ({@code hash.bcrypt.coste}, 4–31)
      * @return PasswordEncoder con cifrado fuerte
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${hash.bcrypt.coste:10}") int coste) {
+        return new BCryptPasswordEncoder(coste);
     }
     
     
@@ -43,6 +49,8 @@ public class SecurityConfig {
      * - Desactiva CSRF (no necesario para APIs REST).
      * - Establece política sin sesiones (stateless).
      * - Permite libre acceso solo a rutas `/auth/**` y documentación Swagger.
+     * - Permite los despachos ASYNC y ERROR: la petición original ya se autenticó
+     *   antes de pasar al pool de IA (ver {@code EjecutorIA}).
      * - Requiere autenticación JWT para todas las demás rutas.
      * - Inserta el filtro `JwtAuthenticationFilter` antes del procesamiento estándar de login.
      *
@@ -60,6 +68,7 @@ public class SecurityConfig {
           // abrimos solo /auth/**  y documentos de Swagger
           .authorizeHttpRequests(auth ->
               auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/auth/**", "/swagger-ui/**", "/v3/api-docs/**").permitAll()
                 .anyRequest().authenticated()
           )
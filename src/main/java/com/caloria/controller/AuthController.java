@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 
 /**
@@ -44,6 +45,10 @@ public class AuthController {
         try {
             String token = authService.login(dto.email(), dto.password());
             return ResponseEntity.ok(new LoginResponseDTO(token));
+        } catch (ResponseStatusException e) {
+            // 401 por credenciales o 503 si el pool de hash está saturado
+            return ResponseEntity.status(e.getStatusCode())
+                                 .body(new LoginResponseDTO(e.getReason()));
         } catch (RuntimeException e) {
             // Captura los errores generados por el servicio de autenticación
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -65,6 +70,9 @@ public class AuthController {
         try {
             String token = authService.register(dto);
             return ResponseEntity.status(HttpStatus.CREATED).body(new LoginResponseDTO(token));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                                 .body(new LoginResponseDTO(e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                                  .body(new LoginResponseDTO("Error en el registro: " + e.getMessage()));
@@ -6,7 +6,9 @@ import com.caloria.service.IAService;
 import lombok.RequiredArgsConstructor;
 import com.caloria.model.CatalogoAlimento;
 import com.caloria.service.CatalogoAlimentoService;
+import com.caloria.service.EjecutorIA;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.springframework.http.HttpStatus;
@@ -30,6 +32,7 @@ public class ComidaController {
 
     private final IAService iaService;
     private final CatalogoAlimentoService catalogoService;
+    private final EjecutorIA ejecutorIA;
     
     
     /**
@@ -39,20 +42,20 @@ public class ComidaController {
      * Si no están, se consulta a la IA para estimar los macros y luego se registran.
      *
      * Los resultados se devuelven como un JSON con los nutrientes por alimento.
+     * El análisis se ejecuta en el pool de IA ({@link EjecutorIA}): responde 503
+     * si está saturado y 504 si no termina a tiempo.
      *
      * @param dtos Lista de alimentos con nombre y gramos
      * @param auth Token JWT del usuario
-     * @return JSON con los macronutrientes calculados para cada alimento
-     * @throws InterruptedException si el hilo de análisis es interrumpido
+     * @return Futuro con el JSON de macronutrientes calculados para cada alimento
      */
     @PostMapping("/analizar")
-    public ResponseEntity<String> analizarComida(
+    public CompletableFuture<ResponseEntity<String>> analizarComida(
             @RequestBody List<AlimentoDTO> dtos,
-            Authentication auth) throws InterruptedException {
+            Authentication auth) {
 
         String usuarioId = auth.getName();
-        String json = iaService.analizarComida(dtos, usuarioId);
-        return ResponseEntity.ok(json);
+        return ejecutorIA.ejecutar(() -> ResponseEntity.ok(iaService.analizarComida(dtos, usuarioId)));
     }
     
     /**
@@ -1,11 +1,23 @@
 package com.caloria.controller;
 
 import com.caloria.dto.ResumenDiaDTO;
+import com.caloria.dto.ResumenPeriodoDTO;
 import com.caloria.service.DiaService;
+import com.caloria.service.ExportacionHistorialService;
+import com.caloria.service.ReconstruccionDiasService;
+import com.caloria.service.ResumenPeriodoService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+
 
 /**
  * Controlador REST encargado de exponer información diaria del usuario,
@@ -22,6 +34,9 @@ import org.springframework.web.bind.annotation.*;
 public class DiaController {
 
     private final DiaService diaService;
+    private final ReconstruccionDiasService reconstruccionService;
+    private final ResumenPeriodoService resumenService;
+    private final ExportacionHistorialService exportacionService;
 
     /**
      * Devuelve un resumen del progreso nutricional del usuario en su día actual.
@@ -41,4 +56,89 @@ public class DiaController {
         String usuarioId = authentication.getName();
         return diaService.getResumenDelDia(usuarioId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Devuelve las estadísticas de una semana (lunes a domingo) frente a los objetivos:
+     * promedios, porcentaje del objetivo, adherencia y rachas.
+     *
+     * @param fecha Cualquier día de la semana (yyyy-MM-dd); por defecto, la actual
+     * @param authentication Token JWT (con el usuarioId como principal)
+     * @return DTO con las estadísticas de la semana
+     */
+    @GetMapping("/resumen/semana")
+    public ResumenPeriodoDTO obtenerResumenSemana(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+            Authentication authentication) {
+        return resumenService.getResumenSemana(authentication.getName(), fecha);
+    }
+
+    /**
+     * Devuelve las estadísticas de un mes frente a los objetivos.
+     *
+     * @param mes Mes a consultar (yyyy-MM); por defecto, el actual
+     * @param authentication Token JWT (con el usuarioId como principal)
+     * @return DTO con las estadísticas del mes
+     */
+    @GetMapping("/resumen/mes")
+    public ResumenPeriodoDTO obtenerResumenMes(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth mes,
+            Authentication authentication) {
+        return resumenService.getResumenMes(authentication.getName(), mes);
+    }
+
+    /**
+     * Devuelve las estadísticas de los últimos días hasta hoy (ventana móvil).
+     *
+     * @param dias Número de días, entre 1 y 30 (por defecto 7)
+     * @param authentication Token JWT (con el usuarioId como principal)
+     * @return DTO con las estadísticas de los últimos días
+     */
+    @GetMapping("/resumen/ultimos")
+    public ResumenPeriodoDTO obtenerResumenUltimos(
+            @RequestParam(defaultValue = "7") int dias,
+            Authentication authentication) {
+        return resumenService.getResumenUltimos(authentication.getName(), dias);
+    }
+
+    /**
+     * Recalcula los totales de los días del usuario a partir de las comidas registradas.
+     *
+     * Útil para corregir totales inconsistentes; los días anteriores al registro
+     * de comidas pueden excluirse con {@code desde}.
+     *
+     * @param desde Primer día a recalcular (yyyy-MM-dd), opcional
+     * @param authentication Token JWT (con el usuarioId como principal)
+     * @return Número de días recalculados
+     * @throws InterruptedException si se interrumpe la reconstrucción
+     */
+    @PostMapping("/reconstruir")
+    public Map<String, Integer> reconstruirDias(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            Authentication authentication) throws InterruptedException {
+        int dias = reconstruccionService.reconstruir(authentication.getName(), desde);
+        return Map.of("diasReconstruidos", dias);
+    }
+
+    /**
+     * Descarga el historial completo del usuario (días y comidas registradas)
+     * en NDJSON o CSV.
+     *
+     * El historial se escribe directamente en la respuesta a medida que se lee
+     * de MongoDB, sin cargarlo en memoria.
+     *
+     * @param formato "ndjson" (por defecto) o "csv"
+     * @param authentication Token JWT (con el usuarioId como principal)
+     * @param response Respuesta HTTP en la que se escribe el historial
+     * @throws IOException si falla la escritura de la respuesta
+     */
+    @GetMapping("/historial/export")
+    public void exportarHistorial(@RequestParam(defaultValue = "ndjson") String formato,
+                                  Authentication authentication,
+                                  HttpServletResponse response) throws IOException {
+        ExportacionHistorialService.Formato f = ExportacionHistorialService.Formato.desde(formato);
+        response.setContentType(f.getTipoContenido());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"historial." + f.getExtension() + "\"");
+        exportacionService.exportar(authentication.getName(), f, response.getOutputStream());
+    }
+}
@@ -6,6 +6,7 @@ import com.caloria.dto.MacrosDTO;
 import com.caloria.dto.ResumenDiaDTO;
 import com.caloria.service.CatalogoRecetasService;
 import com.caloria.service.DiaService;
+import com.caloria.service.EjecutorIA;
 import com.caloria.service.IAService;
 import com.caloria.service.UsuarioService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -15,6 +16,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 
@@ -37,6 +39,7 @@ public class RecetaController {
     private final UsuarioService usuarioService;
     private final CatalogoRecetasService catalogoService;
     private final ObjectMapper objectMapper;  // bean de Jackson
+    private final EjecutorIA ejecutorIA;
     
     
     /**
@@ -46,20 +49,36 @@ public class RecetaController {
      * El JSON devuelto por la IA se parsea a objetos Receta,
      * que luego se guardan en el catálogo (si no existen).
      *
+     * Todo el trabajo se ejecuta en el pool de IA ({@link EjecutorIA}):
+     * responde 503 si está saturado y 504 si no termina a tiempo.
+     *
      * @param numComidas Número de recetas deseadas (1–4)
      * @param auth Token JWT que contiene el ID del usuario
-     * @return Lista de recetas generadas y guardadas
-     * @throws Exception si falla el parseo del JSON o la llamada a IA
+     * @return Futuro con la lista de recetas generadas y guardadas
      */
     @PostMapping("/generar")
-    public ResponseEntity<List<Receta>> generarYGuardarRecetas(
+    public CompletableFuture<ResponseEntity<List<Receta>>> generarYGuardarRecetas(
             @RequestParam int numComidas,
-            Authentication auth) throws Exception {
+            Authentication auth) {
 
         String uid = auth.getName();
+        return ejecutorIA.ejecutar(() -> generarYGuardar(uid, numComidas));
+    }
+
+    /**
+     * Obtiene el resumen del día y el perfil, pide las recetas a la IA
+     * y las guarda en el catálogo.
+     *
+     * @param uid ID del usuario
+     * @param numComidas Número de recetas deseadas
+     * @return Lista de recetas generadas y guardadas
+     * @throws Exception si falla el parseo del JSON o la llamada a IA
+     */
+    private ResponseEntity<List<Receta>> generarYGuardar(String uid, int numComidas) throws Exception {
 
-        // 1) Obtener resumen
-        ResumenDiaDTO resumen = diaService.getResumenDelDia(uid);
+        // 1) Obtener el usuario (una sola lectura por petición) y el resumen del día
+        Usuario usr = usuarioService.obtenerPerfil(uid);
+        ResumenDiaDTO resumen = diaService.getResumenDelDia(usr);
         MacrosDTO macrosDto = new MacrosDTO(
             resumen.getMacrosRestantes().getProteinasG(),
             resumen.getMacrosRestantes().getCarbohidratosG(),
@@ -68,7 +87,6 @@ public class RecetaController {
         );
 
         // 2) Preferencias y alergias
-        Usuario usr = usuarioService.obtenerPerfil(uid);
         List<String> prefs = usr.getPreferencias();
         List<String> alerg = usr.getAlergias();
 
@@ -82,9 +100,7 @@ public class RecetaController {
         List<Receta> recetasIA = wrapper.getRecetas();
 
         // 5) Guardar cada receta en el catálogo (si no existía)
-        List<Receta> guardadas = recetasIA.stream()
-            .map(catalogoService::saveIfNotExists)
-            .collect(Collectors.toList());
+        List<Receta> guardadas = catalogoService.upsertAll(recetasIA);
         
         System.out.println("/// RECETAS PARA FRONT (usuario=" + uid + "):");
         guardadas.forEach(r -> System.out.println("  * " + r));
@@ -0,0 +1,33 @@
+package com.caloria.dto;
+
+import com.caloria.model.Macros;
+import lombok.Data;
+
+
+/**
+ * DTO con las estadísticas nutricionales de un periodo (semana, mes
+ * o últimos N días) frente a los objetivos del usuario.
+ *
+ * Los promedios se calculan sobre los días con consumo registrado.
+ * Un día cumple el objetivo si sus calorías quedan dentro de la tolerancia
+ * configurada ({@code resumen.adherencia.tolerancia}) respecto al objetivo.
+ */
+@Data
+public class ResumenPeriodoDTO {
+
+    private String tipo;                // "semana", "mes" o "ultimos"
+    private String desde;               // "2025-04-14"
+    private String hasta;               // "2025-04-20"
+    private int diasRegistrados;
+
+    private double caloriasObjetivo;
+    private double caloriasPromedio;
+    private double porcentajeObjetivo;  // calorías promedio / objetivo × 100
+
+    private Macros macrosObjetivo;
+    private Macros macrosPromedio;
+
+    private double adherencia;          // % de días registrados que cumplen el objetivo
+    private int rachaMaxima;            // días seguidos cumpliendo el objetivo dentro del periodo
+    private int rachaActual;            // días seguidos cumpliendo el objetivo hasta hoy
+}
@@ -0,0 +1,33 @@
+package com.caloria.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Alias aprendido entre el nombre que escribe el usuario y el nombre
+ * con el que el alimento está guardado en el catálogo.
+ *
+ * Se genera automáticamente cuando la IA devuelve un alimento con un nombre
+ * distinto al ingresado (p. ej. "banana" → "plátano"). Ambos campos se
+ * guardan en forma canónica (ver {@code TextoUtils.canonicalizarAlimento}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "aliasAlimentos")
+public class AliasAlimento {
+
+    @Id
+    private String id;
+
+    /** Nombre canónico tal como lo escribió el usuario */
+    @Indexed(unique = true)
+    private String alias;
+
+    /** Nombre canónico del alimento del catálogo al que apunta */
+    private String nombreCanonico;
+}
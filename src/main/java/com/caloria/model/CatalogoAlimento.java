@@ -1,8 +1,10 @@
 package com.caloria.model;
 
 import com.caloria.utils.RoundingUtils;
+import com.caloria.utils.TextoUtils;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
@@ -18,6 +20,10 @@ public class CatalogoAlimento {
     /** Nombre normalizado, p.ej. "arroz cocido" */
     private String nombre;
 
+    /** Clave de búsqueda indexada: nombre canónico (sin tildes, palabras vacías ni plural) */
+    @Indexed
+    private String nombreNormalizado;
+
     /** Macronutrientes por 100 g */
     private double caloriasPor100g;
     private double proteinasPor100g;
@@ -32,6 +38,7 @@ public class CatalogoAlimento {
 
         CatalogoAlimento cat = new CatalogoAlimento();
         cat.setNombre(a.getNombre());
+        cat.setNombreNormalizado(TextoUtils.canonicalizarAlimento(a.getNombre()));
         cat.setCaloriasPor100g(    RoundingUtils.oneDecimal(a.getCalorias() * factor));
         cat.setProteinasPor100g(   RoundingUtils.oneDecimal(a.getProteinasG() * factor));
         cat.setCarbohidratosPor100g(RoundingUtils.oneDecimal(a.getCarbohidratosG() * factor));
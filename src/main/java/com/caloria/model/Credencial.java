@@ -3,6 +3,7 @@ package com.caloria.model;
 import jakarta.validation.constraints.Email;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 
@@ -27,9 +28,11 @@ public class Credencial {
 
     /**
      * Correo electrónico utilizado como identificador de login.
-     * Validado como email y único en la base de datos.
+     * Validado como email y único en la base de datos (índice único:
+     * dos registros simultáneos con el mismo email no pueden pasar ambos).
      */
     @Email
+    @Indexed(unique = true)
     private String email;
     
     
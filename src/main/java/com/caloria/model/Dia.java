@@ -1,8 +1,13 @@
 package com.caloria.model;
 
 import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.List;
 
 
 /**
@@ -12,16 +17,34 @@ import java.time.LocalTime;
  * los nutrientes consumidos, el total de calorías ingeridas
  * y un contador de consejos solicitados a la IA.
  *
- * Es utilizado por la clase {@link Usuario} para construir su historial diario.
+ * Cada día es un documento de la colección {@code dias}, con un índice único
+ * sobre (usuarioId, fecha): el historial del usuario no crece dentro de
+ * {@link Usuario} y cada día se lee y actualiza por separado. El índice
+ * (fecha, horaInicioDia) permite pre-crear los días de cada cambio de jornada
+ * ({@code PrecreacionDiasService}).
  */
 @Data
+@Document(collection = "dias")
+@CompoundIndex(name = "usuario_fecha", def = "{'usuarioId': 1, 'fecha': 1}", unique = true)
+@CompoundIndex(name = "fecha_hora", def = "{'fecha': 1, 'horaInicioDia': 1}")
 public class Dia {
+
+    @Id
+    private String id;
+
+    /** Usuario al que pertenece el día */
+    private String usuarioId;
 	
 	 /** Fecha efectiva del día, ajustada según la hora de inicio personalizada del usuario */
     private LocalDate fecha;  
     
-    /** Hora a partir de la cual comienza el nuevo día nutricional */
-    private LocalTime horaInicioDia;  
+    /**
+     * Hora a partir de la cual comienza el nuevo día nutricional ("HH:mm", como en
+     * {@link Usuario} y {@link RegistroComida}). Un {@code LocalTime} se guardaría
+     * como fecha completa con el día en que se escribió y no coincidiría al
+     * consultarlo otro día.
+     */
+    private String horaInicioDia;
     
     /** Total de macronutrientes consumidos ese día (g) */
     private Double proteinasConsumidas = 0.0;
@@ -32,6 +55,9 @@ public class Dia {
     /** Número de consejos nutricionales generados por la IA para este día */
     private int consejosGenerados = 0;
 
+    /** IDs de los eventos de {@code comidas} ya sumados a los totales del día */
+    private List<String> aplicados;
+
     /**
      * Incrementa los valores nutricionales con los proporcionados.
      *
@@ -55,7 +81,7 @@ public class Dia {
      */
     public boolean esNuevoDia() {
         LocalTime currentTime = LocalTime.now();
-        return currentTime.isAfter(horaInicioDia);
+        return currentTime.isAfter(Usuario.parsearHoraInicio(horaInicioDia));
     }
 
     /**
@@ -1,7 +1,9 @@
 package com.caloria.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -26,6 +28,14 @@ public class Receta {
   /** Título o nombre de la receta */
   private String titulo;
 
+  /**
+   * Título normalizado (minúsculas y espacios colapsados): clave única del catálogo.
+   * Índice disperso, para que las recetas antiguas sin el campo no colisionen.
+   */
+  @JsonIgnore
+  @Indexed(unique = true, sparse = true)
+  private String tituloNormalizado;
+
   /** Calorías totales estimadas de la receta */
   private int calorias;
 
@@ -2,6 +2,7 @@ package com.caloria.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -13,9 +14,15 @@ import java.util.List;
  *
  * Guarda información detallada sobre los alimentos detectados, su aporte nutricional
  * y la fecha efectiva del día nutricional en que fue registrada.
+ *
+ * La colección {@code comidas} es un registro de eventos de sólo inserción:
+ * cada comida analizada se añade una vez y nunca se modifica. Los totales de
+ * cada {@link Dia} son una vista materializada de estos eventos y pueden
+ * recalcularse a partir de ellos.
  */
 @Data
 @Document(collection = "comidas")
+@CompoundIndex(name = "usuario_dia", def = "{'usuarioId': 1, 'fechaDiaNutricional': 1}")
 public class RegistroComida {
 
     /** ID único del registro (generado por MongoDB) */
@@ -43,6 +50,9 @@ public class RegistroComida {
     /** Totales nutricionales agregados de todos los alimentos */
     private Macros totales;
 
+    /** Calorías totales de todos los alimentos */
+    private double caloriasTotales;
+
     /** Flag que indica si la comida fue procesada con ayuda de OpenAI */
     private boolean procesadoPorOpenAI;
 
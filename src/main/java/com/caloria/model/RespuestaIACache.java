@@ -0,0 +1,35 @@
+package com.caloria.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Respuesta de un asistente de IA guardada como segundo nivel de caché.
+ *
+ * El ID es el resumen SHA-256 de la clave normalizada de la consulta.
+ * MongoDB elimina automáticamente los documentos pasados 7 días
+ * gracias al índice TTL sobre {@code creadoEn}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "cacheIA")
+public class RespuestaIACache {
+
+    /** SHA-256 (hex) de la clave normalizada */
+    @Id
+    private String id;
+
+    /** Texto devuelto por el asistente */
+    private String respuesta;
+
+    /** Momento de creación; base del vencimiento TTL */
+    @Indexed(expireAfter = "7d")
+    private Date creadoEn;
+}
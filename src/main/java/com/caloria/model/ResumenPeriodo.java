@@ -0,0 +1,41 @@
+package com.caloria.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Resumen pre-agregado de una semana (ISO, de lunes a domingo) o de un mes
+ * de un usuario.
+ *
+ * Se actualiza con {@code $inc} en cada registro de comida, así que las
+ * estadísticas del periodo se leen de un único documento en lugar de
+ * recorrer el historial de días.
+ *
+ * El ID es determinista: {@code <usuarioId>:semana:<lunes>} o
+ * {@code <usuarioId>:mes:<yyyy-MM>}.
+ */
+@Data
+@Document(collection = "resumenes")
+public class ResumenPeriodo {
+
+    @Id
+    private String id;
+
+    /** Usuario al que pertenece el resumen */
+    private String usuarioId;
+
+    /** "semana" o "mes" */
+    private String tipo;
+
+    /** Primer día del periodo */
+    private LocalDate inicio;
+
+    /** Totales de cada día con consumo registrado, por fecha (yyyy-MM-dd) */
+    private Map<String, TotalesDia> dias = new HashMap<>();
+}
@@ -0,0 +1,32 @@
+package com.caloria.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+
+/**
+ * Calorías y macronutrientes consumidos en un día, tal como se guardan
+ * dentro de los resúmenes semanales, mensuales y de los últimos días.
+ */
+@Data
+public class TotalesDia {
+
+    /** Fecha del día (yyyy-MM-dd); sólo se guarda en las ranuras de {@link VentanaNutricional} */
+    private String fecha;
+
+    /** Gramos de proteína */
+    private double proteinasG;
+
+    /** Gramos de carbohidratos */
+    private double carbohidratosG;
+
+    /** Gramos de grasa */
+    private double grasasG;
+
+    /** Kilocalorías */
+    private double calorias;
+
+    /** IDs de las comidas ({@link RegistroComida}) ya sumadas; evita sumarlas dos veces */
+    private List<String> eventos;
+}
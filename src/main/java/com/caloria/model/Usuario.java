@@ -1,23 +1,28 @@
 package com.caloria.model;
 
 import com.caloria.utils.RoundingUtils;
-import com.fasterxml.jackson.annotation.JsonIgnore;
-
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 
 /**
  * Entidad que representa el perfil completo de un usuario,
- * incluyendo datos personales, preferencias alimenticias, historial diario
+ * incluyendo datos personales, preferencias alimenticias
  * y metas nutricionales generadas por IA.
  *
+ * El historial diario no forma parte del documento: cada día se guarda
+ * en la colección {@code dias} (ver {@link Dia}).
+ *
  * El perfil se construye por etapas (básicos, actividad, objetivo, preferencias),
  * y una vez completo, se calculan y almacenan las calorías y macros objetivo.
  */
@@ -50,72 +55,66 @@ public class Usuario {
     private List<String> alergias      = new ArrayList<>();
     private boolean preferenciasCompletas = false;
 
+    /** Plan del usuario; determina el límite diario de consejos (null = plan por defecto) */
+    private String plan;
+
     // Metas (solo cuando todo lo anterior esté completo)
     private double caloriasObjetivo;
     private Macros macrosObjetivo;
     private boolean perfilCompleto = false;
 
-    
-    // Historial de progreso
-    @JsonIgnore
-    private List<Dia> historialDeDias = new ArrayList<>();
  // Recetas guardadas por el usuario
     private List<String> recetas = new ArrayList<>();
 
+    /** Formato exacto "HH:mm": las únicas claves que se guardan en {@link #HORAS_INICIO} */
+    private static final Pattern FORMATO_HORA = Pattern.compile("([01]\\d|2[0-3]):[0-5]\\d");
+
+    /** Horas de inicio ya parseadas ("HH:mm" → LocalTime); como mucho 1440 entradas */
+    private static final Map<String, LocalTime> HORAS_INICIO = new ConcurrentHashMap<>();
+
     /**
-     * Devuelve el día activo del usuario teniendo en cuenta la hora de inicio.
-     * Si no existe, lo crea.
-     *
-     * La hora de inicio permite que el día nutricional comience, por ejemplo,
-     * a las 04:00 para usuarios nocturnos. Esto influye en la fecha efectiva.
+     * Parsea una hora de inicio del día reutilizando el resultado de llamadas
+     * anteriores. Sólo se guardan las horas con el formato exacto "HH:mm", de modo
+     * que la caché no puede crecer con textos arbitrarios enviados por un cliente;
+     * cualquier otro texto se parsea sin guardarlo.
      *
-     * @return Objeto Dia correspondiente a la jornada actual.
+     * @param horaInicioDia Hora en formato ISO ("HH:mm")
+     * @return Hora parseada
+     * @throws java.time.format.DateTimeParseException si el formato no es válido
      */
-    public Dia obtenerDiaActual() {
-        LocalTime inicio = LocalTime.parse(this.horaInicioDia);
-        LocalDate hoy   = LocalDate.now();
-        LocalTime ahora = LocalTime.now();
-
-        LocalDate fechaEfectiva = ahora.isBefore(inicio)
-            ? hoy.minusDays(1)
-            : hoy;
-
-        for (Dia dia : historialDeDias) {
-            if (dia.getFecha().equals(fechaEfectiva)) {
-                return dia;
-            }
+    public static LocalTime parsearHoraInicio(String horaInicioDia) {
+        if (!FORMATO_HORA.matcher(horaInicioDia).matches()) {
+            return LocalTime.parse(horaInicioDia);
         }
-
-        Dia nuevo = new Dia();
-        nuevo.setFecha(fechaEfectiva);
-        nuevo.setHoraInicioDia(inicio);
-        historialDeDias.add(nuevo);
-        return nuevo;
+        return HORAS_INICIO.computeIfAbsent(horaInicioDia, LocalTime::parse);
     }
 
-
     /**
-     * Suma una nueva ingesta de macronutrientes al día actual,
-     * redondeando cada valor a un decimal.
+     * Calcula la fecha de la jornada nutricional en curso: antes de la hora
+     * de inicio del día todavía cuenta como la jornada de ayer.
      *
-     * @param proteinas gramos de proteína
-     * @param carbohidratos gramos de carbohidratos
-     * @param grasas gramos de grasa
-     * @param calorias kilocalorías
+     * @param inicio Hora de inicio del día del usuario
+     * @return Fecha efectiva de la jornada actual
      */
-    public void actualizarMacronutrientes(
-            Double proteinas, Double carbohidratos, Double grasas, Double calorias) {
-
-        // redondear cada valor antes de agregar
-        double p = RoundingUtils.oneDecimal(proteinas);
-        double c = RoundingUtils.oneDecimal(carbohidratos);
-        double g = RoundingUtils.oneDecimal(grasas);
-        double k = RoundingUtils.oneDecimal(calorias);
+    public static LocalDate fechaEfectiva(LocalTime inicio) {
+        return fechaEfectiva(inicio, LocalDateTime.now());
+    }
 
-        Dia dia = obtenerDiaActual();
-        dia.agregarMacronutrientes(p, c, g, k);
+    /**
+     * Calcula la fecha de la jornada nutricional a la que pertenece un instante.
+     *
+     * @param inicio Hora de inicio del día del usuario
+     * @param momento Instante a evaluar
+     * @return Fecha efectiva de la jornada de ese instante
+     */
+    public static LocalDate fechaEfectiva(LocalTime inicio, LocalDateTime momento) {
+        LocalDate dia = momento.toLocalDate();
+        return momento.toLocalTime().isBefore(inicio)
+            ? dia.minusDays(1)
+            : dia;
     }
 
+
     /**
      * Aplica los objetivos nutricionales del usuario redondeando a enteros y 1 decimal.
      * Se invoca una vez que el perfil está completamente configurado.
@@ -0,0 +1,33 @@
+package com.caloria.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Totales de los últimos {@link #DIAS} días de un usuario, como un anillo
+ * de ranuras: el día {@code d} ocupa la ranura {@code d.toEpochDay() % DIAS}.
+ *
+ * Cada registro actualiza una sola ranura (suma si ya es de ese día, la
+ * reinicia si guarda un día más antiguo), de modo que las ventanas móviles
+ * de 7 y 30 días se mantienen con coste constante por escritura.
+ *
+ * El ID es el del usuario.
+ */
+@Data
+@Document(collection = "ventanas")
+public class VentanaNutricional {
+
+    /** Número de ranuras: la ventana más larga que se puede consultar */
+    public static final int DIAS = 30;
+
+    @Id
+    private String id;
+
+    /** Ranuras por índice ("0" … "29"); cada una indica su fecha */
+    private Map<String, TotalesDia> slots = new HashMap<>();
+}
@@ -0,0 +1,8 @@
+package com.caloria.repository;
+
+import com.caloria.model.AliasAlimento;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface AliasAlimentoRepository extends MongoRepository<AliasAlimento, String> {
+    boolean existsByAlias(String alias);
+}
@@ -2,8 +2,11 @@ package com.caloria.repository;
 
 import com.caloria.model.CatalogoAlimento;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CatalogoAlimentoRepository extends MongoRepository<CatalogoAlimento, String> {
-    Optional<CatalogoAlimento> findByNombreIgnoreCase(String nombre);
+    Optional<CatalogoAlimento> findFirstByNombreNormalizado(String nombreNormalizado);
+    List<CatalogoAlimento> findByNombreNormalizadoIn(Collection<String> nombresNormalizados);
 }
\ No newline at end of file
@@ -2,8 +2,9 @@ package com.caloria.repository;
 
 import com.caloria.model.Receta;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 
 public interface CatalogoRecetasRepository extends MongoRepository<Receta, String> {
-  Optional<Receta> findByTituloIgnoreCase(String titulo);
-}
\ No newline at end of file
+  List<Receta> findByTituloNormalizadoIn(Collection<String> titulosNormalizados);
+}
@@ -0,0 +1,7 @@
+package com.caloria.repository;
+
+import com.caloria.model.RespuestaIACache;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface RespuestaIACacheRepository extends MongoRepository<RespuestaIACache, String> {
+}
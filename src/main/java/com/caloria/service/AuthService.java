@@ -4,7 +4,6 @@ import com.caloria.dto.RegistroCredencialDTO;
 import com.caloria.model.Credencial;
 import lombok.extern.slf4j.Slf4j;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 
@@ -37,21 +36,10 @@ public class AuthService {
      */
     public String login(String email, String password) {
     	
-    	// 1. Validar las credenciales (usuario y contraseña)
+    	// 1. Validar las credenciales (usuario y contraseña): una única verificación BCrypt
         Credencial cred = credencialService.validar(email, password);
 
-        // 2. Verificación redundante por seguridad (hash contra el texto plano)
-        if (cred == null) {
-            throw new RuntimeException("Usuario no encontrado");
-        }
-
-        // 3. Verificar si la contraseña es incorrecta usando el hash
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-        if (!encoder.matches(password, cred.getPasswordHash())) {
-            throw new RuntimeException("Contraseña incorrecta");
-        }
-
-        // 4. Si todo es correcto, genera y devuelve el token JWT
+        // 2. Si todo es correcto, genera y devuelve el token JWT
         return jwtService.generateToken(cred.getUsuarioId(), cred.getRole());
     }
 
@@ -0,0 +1,121 @@
+package com.caloria.service;
+
+import com.caloria.model.RespuestaIACache;
+import com.caloria.repository.RespuestaIACacheRepository;
+import com.caloria.utils.LruCache;
+import com.caloria.utils.TextoUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+
+
+/**
+ * Caché de dos niveles para las respuestas de los asistentes de IA.
+ *
+ * <ul>
+ *   <li>Nivel 1: LRU en memoria, acotada por {@code ia.cache.l1.max-entradas}</li>
+ *   <li>Nivel 2: colección {@code cacheIA} en MongoDB, con índice TTL de 7 días,
+ *       compartida por todas las instancias y persistente entre reinicios</li>
+ * </ul>
+ *
+ * Las claves se resumen con SHA-256, por lo que pueden ser tan largas como
+ * el prompt normalizado. Cada entrada en memoria guarda su vencimiento (el mismo
+ * del índice TTL), así que una respuesta muy usada no sobrevive en el nivel 1
+ * a su borrado del nivel 2.
+ * Un fallo de MongoDB se trata como un fallo de caché:
+ * nunca impide consultar a la IA.
+ *
+ * Expone los contadores {@code ia.cache} (etiquetas {@code nivel} y
+ * {@code resultado}) en {@code /actuator/metrics/ia.cache}.
+ */
+@Slf4j
+@Service
+public class CacheRespuestasIA {
+
+    /** Vigencia de una respuesta; coincide con el índice TTL de {@link RespuestaIACache} */
+    private static final long VIGENCIA_MS = Duration.ofDays(7).toMillis();
+
+    private final RespuestaIACacheRepository repository;
+    private final LruCache<String, Entrada> memoria;
+
+    private final Counter aciertosL1;
+    private final Counter aciertosL2;
+    private final Counter fallos;
+
+    public CacheRespuestasIA(RespuestaIACacheRepository repository,
+                             MeterRegistry registry,
+                             @Value("${ia.cache.l1.max-entradas:500}") int maxEntradas) {
+        this.repository = repository;
+        this.memoria    = new LruCache<>(maxEntradas);
+        this.aciertosL1 = registry.counter("ia.cache", "nivel", "l1", "resultado", "acierto");
+        this.aciertosL2 = registry.counter("ia.cache", "nivel", "l2", "resultado", "acierto");
+        this.fallos     = registry.counter("ia.cache", "nivel", "l2", "resultado", "fallo");
+    }
+
+    /**
+     * Busca una respuesta en memoria y, si no está, en MongoDB.
+     * Los aciertos de MongoDB se promueven a memoria.
+     *
+     * @param clave Clave normalizada de la consulta
+     * @return Respuesta guardada, o vacío si no hay
+     */
+    public Optional<String> obtener(String clave) {
+        String id = TextoUtils.resumenSha256(clave);
+
+        Entrada enMemoria = memoria.get(id);
+        if (enMemoria != null) {
+            if (enMemoria.vigente()) {
+                aciertosL1.increment();
+                return Optional.of(enMemoria.respuesta());
+            }
+            memoria.remove(id);
+        }
+
+        try {
+            // El borrado TTL de MongoDB puede ir con retraso: se comprueba también aquí
+            Optional<Entrada> enBd = repository.findById(id)
+                    .map(r -> new Entrada(r.getRespuesta(), r.getCreadoEn().getTime() + VIGENCIA_MS))
+                    .filter(Entrada::vigente);
+            if (enBd.isPresent()) {
+                aciertosL2.increment();
+                memoria.put(id, enBd.get());
+                return Optional.of(enBd.get().respuesta());
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se pudo leer la caché de IA en MongoDB: {}", e.getMessage());
+        }
+        fallos.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Guarda una respuesta en ambos niveles.
+     *
+     * @param clave Clave normalizada de la consulta
+     * @param respuesta Texto devuelto por el asistente
+     */
+    public void guardar(String clave, String respuesta) {
+        String id = TextoUtils.resumenSha256(clave);
+        Date creadoEn = new Date();
+        memoria.put(id, new Entrada(respuesta, creadoEn.getTime() + VIGENCIA_MS));
+        try {
+            repository.save(new RespuestaIACache(id, respuesta, creadoEn));
+        } catch (DataAccessException e) {
+            log.warn("No se pudo escribir la caché de IA en MongoDB: {}", e.getMessage());
+        }
+    }
+
+    /** Entrada del nivel 1: respuesta y su vencimiento (epoch ms) */
+    private record Entrada(String respuesta, long expiraEn) {
+        boolean vigente() {
+            return System.currentTimeMillis() < expiraEn;
+        }
+    }
+}
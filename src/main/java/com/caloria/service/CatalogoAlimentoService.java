@@ -1,36 +1,207 @@
 package com.caloria.service;
 
+import com.caloria.dto.AlimentoDTO;
+import com.caloria.model.AliasAlimento;
 import com.caloria.model.CatalogoAlimento;
 import com.caloria.model.Alimento;
+import com.caloria.repository.AliasAlimentoRepository;
 import com.caloria.repository.CatalogoAlimentoRepository;
+import com.caloria.utils.IndiceTrigramas;
+import com.caloria.utils.TextoUtils;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * Servicio responsable de acceder y mantener el catálogo de alimentos normalizados.
  * Estos alimentos representan valores nutricionales por cada 100 gramos.
  *
+ * Todos los nombres pasan por {@link TextoUtils#canonicalizarAlimento(String)}
+ * (tildes, mayúsculas, palabras vacías, plural y género) y después por la tabla
+ * de alias aprendidos ({@link AliasAlimento}), de modo que variantes del mismo
+ * alimento no generan filas duplicadas en el catálogo.
+ *
+ * Mantiene en memoria un índice del catálogo, indexado por nombre canónico,
+ * que se carga al arrancar y se actualiza en cada escritura. Así las búsquedas
+ * de alimentos ya conocidos no requieren ninguna consulta a MongoDB.
+ *
+ * Cada documento guarda además su nombre canónico en un campo indexado,
+ * lo que permite resolver una comida completa con una sola consulta {@code $in}.
+ *
+ * Para nombres con erratas, tildes o palabras de más/menos se ofrece además
+ * una búsqueda aproximada por trigramas ({@link IndiceTrigramas}).
+ *
  * Permite búsquedas por nombre, inserciones seguras (sin duplicados)
  * y actualizaciones explícitas.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CatalogoAlimentoService {
 
     private final CatalogoAlimentoRepository repository;
+    private final AliasAlimentoRepository aliasRepository;
+    private final MongoTemplate mongoTemplate;
+
+    /** Índice en memoria: nombre canónico → alimento del catálogo */
+    private final Map<String, CatalogoAlimento> indice = new ConcurrentHashMap<>();
+
+    /** Índice de trigramas sobre los nombres del catálogo, para búsquedas aproximadas */
+    private final IndiceTrigramas<CatalogoAlimento> similares = new IndiceTrigramas<>();
+
+    /** Alias aprendidos: nombre canónico del usuario → nombre canónico del catálogo */
+    private final Map<String, String> alias = new ConcurrentHashMap<>();
+
+    /** Similitud mínima (0 a 1) para aceptar una coincidencia aproximada */
+    @Value("${catalogo.similitud.umbral:0.6}")
+    private double umbralSimilitud;
 
     /**
-     * Busca un alimento en el catálogo por nombre (sin distinción de mayúsculas).
+     * Carga el catálogo completo en el índice en memoria.
+     * Se ejecuta automáticamente tras la construcción del bean.
+     *
+     * Los documentos antiguos sin {@code nombreNormalizado} (o con un valor
+     * desactualizado) se completan y se guardan en un único lote.
+     * También se cargan los alias aprendidos.
+     */
+    @PostConstruct
+    void cargarIndice() {
+        aliasRepository.findAll().forEach(a -> alias.put(a.getAlias(), a.getNombreCanonico()));
+
+        List<CatalogoAlimento> pendientes = new ArrayList<>();
+        for (CatalogoAlimento ca : repository.findAll()) {
+            String clave = TextoUtils.canonicalizarAlimento(ca.getNombre());
+            if (!clave.equals(ca.getNombreNormalizado())) {
+                ca.setNombreNormalizado(clave);
+                pendientes.add(ca);
+            }
+            indexar(ca);
+        }
+
+        if (!pendientes.isEmpty()) {
+            repository.saveAll(pendientes);
+            log.info("Nombre normalizado completado en {} alimentos del catálogo", pendientes.size());
+        }
+        log.info("Índice del catálogo cargado ({} alimentos, {} alias)", indice.size(), alias.size());
+    }
+
+    /**
+     * Busca un alimento en el catálogo por nombre canónico (ver clase),
+     * siguiendo el alias aprendido si lo hay.
+     *
+     * Primero consulta el índice en memoria; sólo si no está allí
+     * (p. ej. lo insertó otra instancia) se consulta MongoDB.
      *
      * @param nombre Nombre del alimento a buscar
      * @return Optional con el alimento encontrado, o vacío si no existe
      */
     public Optional<CatalogoAlimento> obtenerPorNombre(String nombre) {
-        return repository.findByNombreIgnoreCase(nombre);
+        String clave = claveCatalogo(nombre);
+        CatalogoAlimento enMemoria = indice.get(clave);
+        if (enMemoria != null) {
+            return Optional.of(enMemoria);
+        }
+        Optional<CatalogoAlimento> enBd = repository.findFirstByNombreNormalizado(clave);
+        enBd.ifPresent(this::indexar);
+        return enBd;
+    }
+
+
+    /**
+     * Resuelve contra el catálogo todos los alimentos de una comida a la vez.
+     *
+     * Los nombres presentes en el índice en memoria se resuelven sin acceso a BD;
+     * el resto se busca con una única consulta {@code $in} sobre el campo indexado
+     * {@code nombreNormalizado}, sin importar cuántos alimentos tenga la comida.
+     *
+     * @param dtos Alimentos ingresados por el usuario
+     * @return Mapa nombre canónico (del usuario) → alimento del catálogo (sólo los encontrados)
+     */
+    public Map<String, CatalogoAlimento> resolverLote(List<AlimentoDTO> dtos) {
+        Map<String, CatalogoAlimento> encontrados = new HashMap<>();
+        // nombre en catálogo → claves del usuario que apuntan a él
+        Map<String, Set<String>> pendientes = new LinkedHashMap<>();
+
+        for (AlimentoDTO dto : dtos) {
+            String clave = TextoUtils.canonicalizarAlimento(dto.getNombre());
+            String destino = alias.getOrDefault(clave, clave);
+            CatalogoAlimento enMemoria = indice.get(destino);
+            if (enMemoria != null) {
+                encontrados.put(clave, enMemoria);
+            } else {
+                pendientes.computeIfAbsent(destino, k -> new HashSet<>()).add(clave);
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            for (CatalogoAlimento ca : repository.findByNombreNormalizadoIn(pendientes.keySet())) {
+                indexar(ca);
+                for (String clave : pendientes.getOrDefault(ca.getNombreNormalizado(), Set.of())) {
+                    encontrados.put(clave, ca);
+                }
+            }
+        }
+        return encontrados;
+    }
+
+
+    /**
+     * Registra un alias entre el nombre escrito por el usuario y el nombre
+     * con el que la IA (o el catálogo) identificó el alimento.
+     *
+     * No hace nada si ambos nombres tienen la misma forma canónica
+     * o si el alias ya existía.
+     *
+     * @param nombreUsuario Nombre tal como lo escribió el usuario
+     * @param nombreCatalogo Nombre del alimento en el catálogo
+     */
+    public void registrarAlias(String nombreUsuario, String nombreCatalogo) {
+        String clave   = TextoUtils.canonicalizarAlimento(nombreUsuario);
+        String destino = TextoUtils.canonicalizarAlimento(nombreCatalogo);
+        if (clave.isEmpty() || clave.equals(destino) || alias.containsKey(clave)) {
+            return;
+        }
+        alias.put(clave, destino);
+        try {
+            aliasRepository.save(new AliasAlimento(null, clave, destino));
+            log.debug("Alias aprendido: '{}' → '{}'", clave, destino);
+        } catch (DuplicateKeyException e) {
+            // Otra instancia lo registró antes: el índice único evita duplicados
+            log.debug("Alias '{}' ya registrado", clave);
+        }
+    }
+
+
+    /**
+     * Busca el alimento del catálogo cuyo nombre más se parece al dado,
+     * tolerando erratas, tildes y palabras omitidas.
+     *
+     * Sólo se usa cuando la búsqueda exacta no encontró nada.
+     *
+     * @param nombre Nombre ingresado por el usuario
+     * @return Mejor coincidencia con similitud ≥ {@code catalogo.similitud.umbral}, o vacío
+     */
+    public Optional<IndiceTrigramas.Coincidencia<CatalogoAlimento>> buscarSimilar(String nombre) {
+        return similares.buscarMejor(nombre, umbralSimilitud);
     }
 
 
@@ -42,14 +213,11 @@ public class CatalogoAlimentoService {
      * @return CatalogoAlimento guardado o existente
      */
     public CatalogoAlimento guardarSiNoExiste(Alimento a) {
-        return repository.findByNombreIgnoreCase(a.getNombre())
-                .orElseGet(() -> {
-                    CatalogoAlimento nuevo = CatalogoAlimento.from(a);
-                    return repository.save(nuevo);
-                });
+        return obtenerPorNombre(a.getNombre())
+                .orElseGet(() -> guardar(CatalogoAlimento.from(a)));
     }
-    
-    
+
+
     /**
      * Guarda un alimento del catálogo sólo si no hay uno con el mismo nombre.
      *
@@ -57,10 +225,47 @@ public class CatalogoAlimentoService {
      * @return El objeto existente o el nuevo guardado
      */
     public CatalogoAlimento guardarSiNoExisteCatalogo(CatalogoAlimento ca) {
-        return repository.findByNombreIgnoreCase(ca.getNombre())
-                         .orElseGet(() -> repository.save(ca));
+        return obtenerPorNombre(ca.getNombre())
+                .orElseGet(() -> guardar(ca));
     }
-    
+
+
+    /**
+     * Inserta en el catálogo los alimentos que aún no existen, todos en una
+     * única escritura masiva no ordenada ({@code upsert} por nombre canónico con
+     * {@code $setOnInsert}), seguida de una lectura {@code $in} para indexarlos.
+     *
+     * Los alimentos ya presentes en el índice en memoria se omiten, y las
+     * variantes del mismo nombre canónico dentro del lote se insertan una vez.
+     *
+     * @param alimentos Alimentos a insertar si no existen
+     */
+    public void guardarSiNoExistenLote(List<CatalogoAlimento> alimentos) {
+        Map<String, CatalogoAlimento> nuevos = new LinkedHashMap<>();
+        for (CatalogoAlimento ca : alimentos) {
+            String clave = claveCatalogo(ca.getNombre());
+            if (!indice.containsKey(clave)) {
+                nuevos.putIfAbsent(clave, ca);
+            }
+        }
+        if (nuevos.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CatalogoAlimento.class);
+        nuevos.forEach((clave, ca) -> bulk.upsert(
+                new Query(Criteria.where("nombreNormalizado").is(clave)),
+                new Update().setOnInsert("nombre", ca.getNombre())
+                            .setOnInsert("caloriasPor100g", ca.getCaloriasPor100g())
+                            .setOnInsert("proteinasPor100g", ca.getProteinasPor100g())
+                            .setOnInsert("carbohidratosPor100g", ca.getCarbohidratosPor100g())
+                            .setOnInsert("grasasPor100g", ca.getGrasasPor100g())));
+        bulk.execute();
+
+        repository.findByNombreNormalizadoIn(nuevos.keySet()).forEach(this::indexar);
+        log.debug("Catálogo: {} alimentos nuevos insertados en lote", nuevos.size());
+    }
+
 
     /**
      * Devuelve la lista completa de alimentos del catálogo.
@@ -73,11 +278,56 @@ public class CatalogoAlimentoService {
 
     /**
      * Fuerza la actualización (o inserción) de un alimento en el catálogo.
+     * Si el alimento cambió de nombre, se retira la entrada anterior del índice.
      *
      * @param ca Alimento actualizado
      * @return Alimento persistido
      */
     public CatalogoAlimento actualizar(CatalogoAlimento ca) {
-        return repository.save(ca);
+        ca.setNombreNormalizado(TextoUtils.canonicalizarAlimento(ca.getNombre()));
+        CatalogoAlimento guardado = repository.save(ca);
+        indice.entrySet().removeIf(e -> {
+            boolean mismo = e.getValue().getId() != null && e.getValue().getId().equals(guardado.getId());
+            if (mismo) {
+                similares.eliminar(e.getValue().getNombre());
+            }
+            return mismo;
+        });
+        return indexar(guardado);
+    }
+
+    /**
+     * Traduce un nombre cualquiera a la clave del catálogo: forma canónica
+     * y, si existe, el alias aprendido.
+     *
+     * @param nombre Nombre original
+     * @return Clave con la que buscar en el índice o en {@code nombreNormalizado}
+     */
+    private String claveCatalogo(String nombre) {
+        String clave = TextoUtils.canonicalizarAlimento(nombre);
+        return alias.getOrDefault(clave, clave);
+    }
+
+    /**
+     * Persiste un alimento nuevo con su nombre canónico y lo indexa en memoria.
+     *
+     * @param ca Alimento a insertar
+     * @return Alimento persistido
+     */
+    private CatalogoAlimento guardar(CatalogoAlimento ca) {
+        ca.setNombreNormalizado(TextoUtils.canonicalizarAlimento(ca.getNombre()));
+        return indexar(repository.save(ca));
+    }
+
+    /**
+     * Registra un alimento en los índices en memoria (exacto y de trigramas).
+     *
+     * @param ca Alimento persistido
+     * @return El mismo alimento, para encadenar
+     */
+    private CatalogoAlimento indexar(CatalogoAlimento ca) {
+        indice.put(TextoUtils.canonicalizarAlimento(ca.getNombre()), ca);
+        similares.agregar(ca.getNombre(), ca);
+        return ca;
     }
-}
\ No newline at end of file
+}
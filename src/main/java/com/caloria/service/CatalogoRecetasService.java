@@ -2,27 +2,42 @@ package com.caloria.service;
 
 import com.caloria.model.Receta;
 import com.caloria.repository.CatalogoRecetasRepository;
+import com.caloria.utils.TextoUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 
 /**
  * Servicio que gestiona el catálogo de recetas disponibles para los usuarios.
  * Permite guardar recetas únicas, parsear respuestas desde IA y recuperar por ID.
+ *
+ * Una receta se identifica por su título normalizado ({@code tituloNormalizado},
+ * con índice único): los lotes de recetas se resuelven con una escritura masiva
+ * de {@code upsert} y una única lectura, en lugar de una búsqueda por receta.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CatalogoRecetasService {
 
     private final CatalogoRecetasRepository repo;
+    private final MongoTemplate mongoTemplate;
     private final ObjectMapper mapper;
 
     /**
@@ -37,12 +52,10 @@ public class CatalogoRecetasService {
         JsonNode root = mapper.readTree(json).get("recetas");
         List<Receta> lista = new ArrayList<>();
         for (JsonNode node : root) {
-            Receta r = mapper.treeToValue(node, Receta.class);
-            // Usa tu saveIfNotExists para evitar duplicados:
-            Receta guardada = saveIfNotExists(r);
-            lista.add(guardada);
+            lista.add(mapper.treeToValue(node, Receta.class));
         }
-        return lista;
+        // Un solo lote para evitar duplicados
+        return upsertAll(lista);
     }
     
     
@@ -53,8 +66,52 @@ public class CatalogoRecetasService {
      * @return Receta existente o nueva
      */
     public Receta saveIfNotExists(Receta receta) {
-        return repo.findByTituloIgnoreCase(receta.getTitulo())
-                   .orElseGet(() -> repo.save(receta));
+        return upsertAll(List.of(receta)).get(0);
+    }
+
+    /**
+     * Guarda un lote de recetas, reutilizando las que ya existen con el mismo
+     * título (sin distinguir mayúsculas ni espacios repetidos).
+     *
+     * Todas las recetas se resuelven con una escritura masiva no ordenada de
+     * {@code upsert} por {@code tituloNormalizado} con {@code $setOnInsert}
+     * (una receta existente nunca se sobrescribe) y una lectura con {@code $in}.
+     * Las recetas sin título se insertan tal cual.
+     *
+     * @param recetas Recetas a guardar
+     * @return Receta guardada o existente para cada receta de entrada, en el mismo orden
+     */
+    public List<Receta> upsertAll(List<Receta> recetas) {
+        Map<String, Receta> porTitulo = new LinkedHashMap<>();
+        for (Receta r : recetas) {
+            String clave = TextoUtils.normalizar(r.getTitulo());
+            if (!clave.isEmpty()) {
+                porTitulo.putIfAbsent(clave, r);
+            }
+        }
+
+        if (!porTitulo.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Receta.class);
+            porTitulo.forEach((clave, r) -> bulk.upsert(
+                    new Query(Criteria.where("tituloNormalizado").is(clave)),
+                    new Update().setOnInsert("titulo", r.getTitulo())
+                                .setOnInsert("calorias", r.getCalorias())
+                                .setOnInsert("ingredientes", r.getIngredientes())
+                                .setOnInsert("instrucciones", r.getInstrucciones())
+                                .setOnInsert("macroNutrientes", r.getMacroNutrientes())));
+            bulk.execute();
+
+            repo.findByTituloNormalizadoIn(porTitulo.keySet())
+                .forEach(guardada -> porTitulo.put(guardada.getTituloNormalizado(), guardada));
+        }
+
+        List<Receta> resultado = new ArrayList<>(recetas.size());
+        for (Receta r : recetas) {
+            String clave = TextoUtils.normalizar(r.getTitulo());
+            resultado.add(clave.isEmpty() ? repo.insert(r) : porTitulo.get(clave));
+        }
+        log.debug("Catálogo de recetas: {} recetas resueltas en lote", recetas.size());
+        return resultado;
     }
     
     /**
@@ -67,4 +124,4 @@ public class CatalogoRecetasService {
       return repo.findAllById(ids);
     }
     
-}
\ No newline at end of file
+}
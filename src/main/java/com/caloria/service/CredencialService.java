@@ -10,8 +10,8 @@ import com.caloria.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -33,7 +33,7 @@ public class CredencialService {
 
     private final CredencialRepository credencialRepository;
     private final UsuarioRepository    usuarioRepository;
-    private final PasswordEncoder      passwordEncoder;
+    private final HashContrasenasService hashService;
 
     /**
      * Registra una nueva credencial en el sistema, generando:
@@ -41,6 +41,11 @@ public class CredencialService {
      * 2) Un objeto Credencial persistido con contraseña encriptada.
      * 3) Un usuario esqueleto asociado al mismo UUID, con el email.
      *
+     * El email duplicado se detecta al insertar, gracias al índice único de
+     * {@code credenciales.email}: sin consulta previa y sin carrera entre dos
+     * registros simultáneos. Si falla la creación del usuario se elimina la
+     * credencial, para no dejar un email ocupado sin perfil.
+     *
      * Lanza una excepción si el email ya está registrado.
      *
      * @param dto Datos del registro (email y contraseña en texto plano)
@@ -48,31 +53,35 @@ public class CredencialService {
      */
     public Credencial registrar(RegistroCredencialDTO dto) {
 
-        // 1. Validar duplicado
-        if (credencialRepository.existsByEmail(dto.getEmail())) {
-            log.warn("Intento de registro con email ya existente: {}", dto.getEmail());
-            throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST, "El email ya está registrado");
-        }
-
-        // 2. Crear credencial
+        // 1. Crear credencial
         String uid = UUID.randomUUID().toString();
         Credencial cred = new Credencial();
         cred.setEmail(dto.getEmail());
-        cred.setPasswordHash(passwordEncoder.encode(dto.getPassword()));
+        cred.setPasswordHash(hashService.cifrar(dto.getPassword()));
         cred.setRole("ROLE_USER");
         cred.setUsuarioId(uid);
-        credencialRepository.save(cred);
+
+        // 2. Insertar; el índice único rechaza el email duplicado
+        try {
+            credencialRepository.insert(cred);
+        } catch (DuplicateKeyException e) {
+            log.warn("Intento de registro con email ya existente: {}", dto.getEmail());
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "El email ya está registrado");
+        }
         log.debug("Credencial guardada para {} (uid={})", cred.getEmail(), uid);
 
-        // 3. Crear usuario esqueleto con email
-        if (!usuarioRepository.existsById(uid)) {
-            Usuario usr = new Usuario();
-            usr.setId(uid);
-            usr.setEmail(dto.getEmail());               // También guardamos el email en la entidad Usuario
-            usuarioRepository.save(usr);
-            log.debug("Usuario esqueleto creado con id {} y email={}", uid, dto.getEmail());
+        // 3. Crear usuario esqueleto con email (el UUID es nuevo, no puede existir)
+        Usuario usr = new Usuario();
+        usr.setId(uid);
+        usr.setEmail(dto.getEmail());               // También guardamos el email en la entidad Usuario
+        try {
+            usuarioRepository.insert(usr);
+        } catch (RuntimeException e) {
+            credencialRepository.delete(cred);
+            throw e;
         }
+        log.debug("Usuario esqueleto creado con id {} y email={}", uid, dto.getEmail());
 
         return cred;
     }
@@ -83,6 +92,8 @@ public class CredencialService {
      * - La contraseña ingresada coincida con el hash almacenado
      *
      * Lanza una excepción HTTP 401 si las credenciales son incorrectas.
+     * Si el hash se generó con un coste de BCrypt distinto del configurado,
+     * se vuelve a cifrar la contraseña y se guarda.
      *
      * @param email Email ingresado
      * @param rawPassword Contraseña en texto plano
@@ -92,12 +103,19 @@ public class CredencialService {
 
         Credencial cred = credencialRepository.findByEmail(email);
 
-        if (cred == null || !passwordEncoder.matches(rawPassword, cred.getPasswordHash())) {
+        if (cred == null || !hashService.verificar(rawPassword, cred.getPasswordHash())) {
             log.warn("Login fallido para {}", email);
             throw new ResponseStatusException(
                     HttpStatus.UNAUTHORIZED, "Credenciales incorrectas");
         }
 
+        // Si cambió el coste de BCrypt, se aprovecha la contraseña en claro para actualizar el hash
+        if (hashService.requiereRecifrado(cred.getPasswordHash())) {
+            cred.setPasswordHash(hashService.cifrar(rawPassword));
+            credencialRepository.save(cred);
+            log.debug("Hash de {} actualizado al coste configurado", email);
+        }
+
         log.debug("Login validado para {} (uid={})", email, cred.getUsuarioId());
         return cred;
     }
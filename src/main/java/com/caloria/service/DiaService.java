@@ -1,17 +1,33 @@
 // src/main/java/com/caloria/service/DiaService.java
 package com.caloria.service;
 
-import com.caloria.dto.MacrosDTO;
 import com.caloria.dto.ResumenDiaDTO;
+import com.caloria.model.Alimento;
 import com.caloria.model.Dia;
 import com.caloria.model.Macros;
+import com.caloria.model.RegistroComida;
 import com.caloria.model.Usuario;
-import com.caloria.repository.UsuarioRepository;
-import lombok.RequiredArgsConstructor;
+import com.caloria.utils.RoundingUtils;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
 import java.util.function.Function;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
@@ -23,21 +39,32 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
  * incluyendo el seguimiento de consumo calórico, macronutrientes
  * y generación de consejos nutricionales.
  *
- * Este servicio actúa como intermediario entre el repositorio de usuarios
- * y las acciones que modifican el estado del día actual de cada usuario.
+ * Este servicio actúa como intermediario entre los repositorios de usuarios
+ * y de días (colección {@code dias}) y las acciones que modifican el estado
+ * del día actual de cada usuario.
  *
  * Funcionalidades principales:
  * <ul>
  *   <li>Obtener resumen diario nutricional</li>
- *   <li>Registrar consumo de alimentos</li>
+ *   <li>Registrar consumo de alimentos (eventos en {@code comidas} y totales del día)</li>
  *   <li>Controlar límite de consejos diarios</li>
  * </ul>
  */
 @Service
-@RequiredArgsConstructor
 public class DiaService {
 
-    private final UsuarioRepository usuarioRepository;
+    private final MongoTemplate mongoTemplate;
+    private final Environment environment;
+    private final Counter diasCreadosBajoDemanda;
+
+    @Value("${consejos.limite.por-defecto:100}")
+    private int limitePorDefecto;
+
+    public DiaService(MongoTemplate mongoTemplate, Environment environment, MeterRegistry registry) {
+        this.mongoTemplate          = mongoTemplate;
+        this.environment            = environment;
+        this.diasCreadosBajoDemanda = registry.counter("dias.creados", "modo", "bajo-demanda");
+    }
 
     /**
      * Devuelve un resumen del día actual del usuario, incluyendo:
@@ -46,25 +73,65 @@ public class DiaService {
      *
      * Todos los valores se devuelven redondeados a enteros.
      *
+     * Es el endpoint más consultado, así que no construye el {@link Usuario}:
+     * lee sólo los objetivos y la hora de inicio (proyección sobre {@code usuarios})
+     * y los campos consumidos del día actual por el índice (usuarioId, fecha).
+     *
      * @param usuarioId ID del usuario autenticado
      * @return DTO con los datos del día
      */
     public ResumenDiaDTO getResumenDelDia(String usuarioId) {
-    	// Verifica existencia del usuario
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+    	// Verifica existencia del usuario y lee sólo los campos necesarios
+        Document usuario = leerUsuario(usuarioId, "caloriasObjetivo", "macrosObjetivo", "horaInicioDia");
+        Dia dia = obtenerDiaActual(usuarioId, Usuario.parsearHoraInicio(usuario.getString("horaInicioDia")));
+        return construirResumen(usuario, dia);
+    }
 
-        Dia dia = usuario.obtenerDiaActual();
+    /**
+     * Devuelve el resumen del día a partir de un usuario ya leído (p. ej. la
+     * instantánea de la petición, {@link UsuarioContexto}), sin volver a leerlo:
+     * sólo consulta el día actual.
+     *
+     * @param usuario Usuario con sus objetivos y hora de inicio
+     * @return DTO con los datos del día
+     */
+    public ResumenDiaDTO getResumenDelDia(Usuario usuario) {
+        Dia dia = obtenerDiaActual(usuario.getId(), Usuario.parsearHoraInicio(usuario.getHoraInicioDia()));
+        Macros macObj = usuario.getMacrosObjetivo() != null ? usuario.getMacrosObjetivo() : new Macros();
+        return construirResumen(usuario.getCaloriasObjetivo(), macObj, dia);
+    }
 
-        // Obtención de valores objetivo y consumidos
-        double calObj  = usuario.getCaloriasObjetivo();
-        double calCons = dia.getCaloriasConsumidas();
-        
-        
+    /**
+     * Construye el resumen del día a partir de los objetivos del usuario
+     * (proyección de {@code usuarios}) y los campos consumidos del día.
+     *
+     * @param usuario Documento con caloriasObjetivo, macrosObjetivo y horaInicioDia
+     * @param dia Día actual del usuario
+     * @return DTO con los datos del día
+     */
+    private ResumenDiaDTO construirResumen(Document usuario, Dia dia) {
         // Obtención de objetivos de macros (pueden ser null)
-        Macros macObj = usuario.getMacrosObjetivo() != null
-                        ? usuario.getMacrosObjetivo()
-                        : new Macros();
+        Document doc = usuario.get("macrosObjetivo", Document.class) != null
+                       ? usuario.get("macrosObjetivo", Document.class)
+                       : new Document();
+        Macros macObj = new Macros();
+        macObj.setProteinasG(numero(doc, "proteinasG"));
+        macObj.setCarbohidratosG(numero(doc, "carbohidratosG"));
+        macObj.setGrasasG(numero(doc, "grasasG"));
+        return construirResumen(numero(usuario, "caloriasObjetivo"), macObj, dia);
+    }
+
+    /**
+     * Construye el resumen del día a partir de los objetivos y los campos consumidos del día.
+     *
+     * @param calObj Calorías objetivo
+     * @param macObj Macros objetivo
+     * @param dia Día actual del usuario
+     * @return DTO con los datos del día
+     */
+    private ResumenDiaDTO construirResumen(double calObj, Macros macObj, Dia dia) {
+        // Obtención de valores consumidos
+        double calCons = dia.getCaloriasConsumidas();
         
         // Valores individuales
         double protObj = macObj.getProteinasG();
@@ -115,53 +182,239 @@ public class DiaService {
     }
 
     /**
-     * Registra el consumo de un alimento en el día actual del usuario.
-     * Los valores se suman al progreso diario de macronutrientes.
+     * Construye el evento de una comida analizada, sin guardarlo.
+     *
+     * La fecha del día nutricional se calcula a partir del momento en que se
+     * analizó la comida, no del momento en que se persiste. El ID se asigna aquí
+     * para que reintentar {@link #guardarRegistro(RegistroComida)} no lo duplique.
      *
      * @param usuarioId ID del usuario
-     * @param dto Objeto con los valores nutricionales a registrar
+     * @param alimentos Porciones consumidas
+     * @param textoOriginal Texto de la comida tal como la envió el usuario
+     * @param procesadoPorIA Si algún alimento se resolvió con la IA
+     * @param momento Momento en que se analizó la comida
+     * @return Evento listo para guardar
      */
-    public void registrarAlimento(String usuarioId, MacrosDTO dto) {
-    	// Verifica si el usuario existe en la base de datos
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
-        
-        // Aplica la actualización de macros al día actual
-        usuario.actualizarMacronutrientes(
-            dto.getProteinasG(),
-            dto.getCarbohidratosG(),
-            dto.getGrasasG(),
-            dto.getCalorias()
-        );
-        // Persiste los cambios en el repositorio
-        usuarioRepository.save(usuario);
+    public RegistroComida crearRegistro(String usuarioId, List<Alimento> alimentos, String textoOriginal,
+                                        boolean procesadoPorIA, LocalDateTime momento) {
+        LocalTime inicio = horaInicio(usuarioId);
+
+        // Los totales se suman en memoria, con el mismo redondeo por alimento que el día
+        Macros totales = new Macros();
+        double calorias = 0;
+        for (Alimento a : alimentos) {
+            totales.setProteinasG(totales.getProteinasG() + RoundingUtils.oneDecimal(a.getProteinasG()));
+            totales.setCarbohidratosG(totales.getCarbohidratosG() + RoundingUtils.oneDecimal(a.getCarbohidratosG()));
+            totales.setGrasasG(totales.getGrasasG() + RoundingUtils.oneDecimal(a.getGrasasG()));
+            calorias += RoundingUtils.oneDecimal(a.getCalorias());
+        }
+
+        RegistroComida registro = new RegistroComida();
+        registro.setId(new ObjectId().toHexString());
+        registro.setUsuarioId(usuarioId);
+        registro.setFechaIngreso(momento);
+        registro.setTextoOriginal(textoOriginal);
+        registro.setFechaDiaNutricional(Usuario.fechaEfectiva(inicio, momento).toString());
+        registro.setHoraInicioDia(inicio.toString());
+        registro.setAlimentos(alimentos);
+        registro.setTotales(totales);
+        registro.setCaloriasTotales(calorias);
+        registro.setProcesadoPorOpenAI(procesadoPorIA);
+        registro.setFechaProcesamiento(procesadoPorIA ? momento : null);
+        return registro;
     }
 
     /**
-     * Solicita un nuevo consejo de recetas. Lanza 400
-     * si ya se han generado 3 hoy, y guarda el incremento.
+     * Añade un evento de comida al registro {@code comidas}. Si ya estaba
+     * guardado (reintento tras un error), no hace nada.
+     *
+     * @param registro Evento creado con {@link #crearRegistro}
+     */
+    public void guardarRegistro(RegistroComida registro) {
+        try {
+            mongoTemplate.insert(registro);
+        } catch (DuplicateKeyException e) {
+            // Ya insertado en un intento anterior
+        }
+    }
+
+    /**
+     * Aplica los totales de un evento de comida a su día (vista materializada),
+     * con un único {@code upsert} atómico con {@code $inc}. Los resúmenes por
+     * periodo se actualizan aparte ({@link ResumenPeriodoService#registrar(RegistroComida)}).
+     *
+     * Es idempotente: el día guarda los IDs de los eventos ya aplicados
+     * ({@code aplicados}) y sólo se incrementa si el evento no está entre ellos.
+     * Reintentar tras un error de escritura ambiguo, o aplicar un evento que ya
+     * contó una reconstrucción ({@link ReconstruccionDiasService}), no lo suma dos veces.
+     *
+     * @param registro Evento ya guardado
+     * @return true si se aplicó, false si el día ya lo incluía
+     */
+    public boolean aplicarRegistro(RegistroComida registro) {
+        Query query = new Query(Criteria.where("usuarioId").is(registro.getUsuarioId())
+                .and("fecha").is(LocalDate.parse(registro.getFechaDiaNutricional()))
+                .and("aplicados").ne(registro.getId()));
+        Update incremento = new Update()
+                .inc("proteinasConsumidas",     registro.getTotales().getProteinasG())
+                .inc("carbohidratosConsumidos", registro.getTotales().getCarbohidratosG())
+                .inc("grasasConsumidas",        registro.getTotales().getGrasasG())
+                .inc("caloriasConsumidas",      registro.getCaloriasTotales())
+                .addToSet("aplicados", registro.getId());
+        UpdateResult resultado = actualizarDia(query, Usuario.parsearHoraInicio(registro.getHoraInicioDia()), incremento);
+        return resultado.getModifiedCount() > 0 || resultado.getUpsertedId() != null;
+    }
+
+    /**
+     * Solicita un nuevo consejo de recetas. Lanza 400 si ya se ha alcanzado
+     * el límite diario del plan del usuario y, si no, suma uno al contador.
      * Devuelve el resumen actualizado (incluye el nuevo conteo).
      *
+     * La comprobación y el incremento son una sola operación atómica
+     * ({@code findAndModify} con {@code consejosGenerados < límite}), que además
+     * devuelve el día actualizado: dos peticiones simultáneas nunca superan el límite.
+     *
+     * El límite se lee de {@code consejos.limite.<plan>}, o de
+     * {@code consejos.limite.por-defecto} si el usuario no tiene plan o su plan
+     * no está configurado.
+     *
      * @param usuarioId ID del usuario autenticado
      * @return DTO con los datos del día actualizado tras generar un consejo
+     * @throws ResponseStatusException 400 si ya se alcanzó el límite diario
      */
     public ResumenDiaDTO solicitarConsejo(String usuarioId) {
-    	// Verifica si el usuario existe
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
-        // Accede al día actual del usuario
-        Dia dia = usuario.obtenerDiaActual();
-        
-        // Verifica que no se haya excedido el límite diario de consejos (3)
-        if (dia.getConsejosGenerados() >= 100) {
-            throw new ResponseStatusException(BAD_REQUEST, "Ya has usado los 3 consejos diarios");
+        // Verifica si el usuario existe y lee objetivos, hora de inicio y plan
+        Document usuario = leerUsuario(usuarioId, "caloriasObjetivo", "macrosObjetivo", "horaInicioDia", "plan");
+        LocalTime inicio = Usuario.parsearHoraInicio(usuario.getString("horaInicioDia"));
+        LocalDate fecha = Usuario.fechaEfectiva(inicio);
+        int limite = limiteConsejos(usuario.getString("plan"));
+
+        // Sólo incrementa si el contador no ha llegado al límite; los días creados
+        // por un registro de comida o por la pre-creación pueden no tener el campo
+        Query query = new Query(Criteria.where("usuarioId").is(usuarioId)
+                .and("fecha").is(fecha)
+                .orOperator(Criteria.where("consejosGenerados").lt(limite),
+                            Criteria.where("consejosGenerados").exists(false)));
+        Update update = new Update().inc("consejosGenerados", 1).setOnInsert("horaInicioDia", inicio.toString());
+
+        Dia dia;
+        try {
+            // Si el día no existe todavía se crea con el contador a 1
+            dia = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true).upsert(true), Dia.class);
+        } catch (DuplicateKeyException e) {
+            // El día existe pero no cumple el filtro (límite alcanzado), o lo ha creado
+            // otra petición a la vez: se reintenta sin crear el día
+            dia = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true), Dia.class);
+        }
+        if (dia == null) {
+            throw new ResponseStatusException(BAD_REQUEST, "Ya has usado los " + limite + " consejos diarios");
         }
 
-        // Incrementa el contador de consejos usados
-        dia.incrementarConsejosGenerados();
-        usuarioRepository.save(usuario);
+        // Resumen con el contador actualizado, sin volver a leer el día
+        return construirResumen(usuario, dia);
+    }
+
+    /**
+     * Límite diario de consejos para un plan de usuario.
+     *
+     * @param plan Plan del usuario (puede ser null)
+     * @return Número máximo de consejos por día
+     */
+    private int limiteConsejos(String plan) {
+        Integer limite = plan != null
+                ? environment.getProperty("consejos.limite." + plan, Integer.class)
+                : null;
+        return limite != null ? limite : limitePorDefecto;
+    }
 
-        // Devuelve el resumen del día con el contador actualizado
-        return getResumenDelDia(usuarioId);
+    /**
+     * Lee sólo los campos indicados del documento del usuario, sin construir la entidad.
+     *
+     * @param usuarioId ID del usuario
+     * @param campos Campos a incluir en la proyección
+     * @return Documento con los campos pedidos
+     * @throws ResponseStatusException 404 si el usuario no existe
+     */
+    private Document leerUsuario(String usuarioId, String... campos) {
+        Query query = new Query(Criteria.where("_id").is(usuarioId));
+        query.fields().include(campos);
+        Document usuario = mongoTemplate.findOne(query, Document.class, "usuarios");
+        if (usuario == null) {
+            throw new ResponseStatusException(NOT_FOUND, "Usuario no encontrado");
+        }
+        return usuario;
+    }
+
+    /**
+     * Lee y parsea la hora de inicio del día del usuario.
+     *
+     * @param usuarioId ID del usuario
+     * @return Hora de inicio del día
+     */
+    private LocalTime horaInicio(String usuarioId) {
+        return Usuario.parsearHoraInicio(leerUsuario(usuarioId, "horaInicioDia").getString("horaInicioDia"));
+    }
+
+    /**
+     * Devuelve el día de la jornada actual del usuario desde la colección
+     * {@code dias}, leyendo sólo los campos consumidos y el contador de consejos.
+     * Si todavía no existe, devuelve uno nuevo a cero sin guardarlo.
+     *
+     * @param usuarioId ID del usuario
+     * @param inicio Hora de inicio del día del usuario
+     * @return Día actual del usuario
+     */
+    private Dia obtenerDiaActual(String usuarioId, LocalTime inicio) {
+        LocalDate fecha = Usuario.fechaEfectiva(inicio);
+        Query query = new Query(Criteria.where("usuarioId").is(usuarioId).and("fecha").is(fecha));
+        query.fields().include("proteinasConsumidas", "carbohidratosConsumidos",
+                               "grasasConsumidas", "caloriasConsumidas", "consejosGenerados");
+        Dia dia = mongoTemplate.findOne(query, Dia.class);
+        if (dia == null) {
+            dia = new Dia();
+        }
+        dia.setUsuarioId(usuarioId);
+        dia.setFecha(fecha);
+        dia.setHoraInicioDia(inicio.toString());
+        return dia;
+    }
+
+    /**
+     * Lee un campo numérico de un documento (entero o decimal), o 0 si no está.
+     */
+    private static double numero(Document doc, String campo) {
+        Object valor = doc.get(campo);
+        return valor instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    /**
+     * Aplica una actualización atómica al día que selecciona la consulta, creándolo
+     * si no existe ({@code upsert} sobre el índice único usuarioId + fecha).
+     *
+     * Si el día ya existe pero no cumple el resto del filtro, o si dos peticiones
+     * lo crean a la vez, el {@code upsert} recibe un error de clave duplicada;
+     * entonces el día ya existe y se reintenta sin crearlo. Los días creados aquí
+     * (no pre-creados por {@link PrecreacionDiasService}) se cuentan en
+     * {@code dias.creados{modo=bajo-demanda}}.
+     *
+     * @param query Consulta por usuarioId y fecha (con filtros adicionales opcionales)
+     * @param inicio Hora de inicio del día del usuario (se guarda al crear el día)
+     * @param update Actualización a aplicar
+     * @return Resultado de la actualización
+     */
+    private UpdateResult actualizarDia(Query query, LocalTime inicio, Update update) {
+        update.setOnInsert("horaInicioDia", inicio.toString());
+        UpdateResult resultado;
+        try {
+            resultado = mongoTemplate.upsert(query, update, Dia.class);
+        } catch (DuplicateKeyException e) {
+            resultado = mongoTemplate.updateFirst(query, update, Dia.class);
+        }
+        if (resultado.getUpsertedId() != null) {
+            diasCreadosBajoDemanda.increment();
+        }
+        return resultado;
     }
-}
\ No newline at end of file
+}
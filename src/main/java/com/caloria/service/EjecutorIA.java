@@ -0,0 +1,88 @@
+package com.caloria.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Ejecuta en el pool {@code iaExecutor} el trabajo de los endpoints que
+ * esperan a un asistente de IA, liberando el hilo de Tomcat de inmediato.
+ *
+ * <ul>
+ *   <li>Pool lleno: responde 503 con {@code Retry-After}</li>
+ *   <li>Tarea más larga que {@code ia.executor.timeout-segundos}: responde 504</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class EjecutorIA {
+
+    private final Executor executor;
+    private final UsuarioContexto contexto;
+    private final long timeoutSegundos;
+    private final long reintentarSegundos;
+
+    public EjecutorIA(@Qualifier("iaExecutor") Executor executor,
+                      UsuarioContexto contexto,
+                      @Value("${ia.executor.timeout-segundos:75}") long timeoutSegundos,
+                      @Value("${ia.executor.reintentar-segundos:10}") long reintentarSegundos) {
+        this.executor           = executor;
+        this.contexto           = contexto;
+        this.timeoutSegundos    = timeoutSegundos;
+        this.reintentarSegundos = reintentarSegundos;
+    }
+
+    /**
+     * Lanza una tarea en el pool de IA.
+     *
+     * @param tarea Trabajo a realizar; puede lanzar excepciones comprobadas
+     * @param <T> Tipo del cuerpo de la respuesta
+     * @return Futuro con la respuesta de la tarea, o 503/504 según el caso
+     */
+    public <T> CompletableFuture<ResponseEntity<T>> ejecutar(Callable<ResponseEntity<T>> tarea) {
+        // La tarea comparte los usuarios ya leídos en la petición
+        Callable<ResponseEntity<T>> conContexto = contexto.propagar(tarea);
+        CompletableFuture<ResponseEntity<T>> futuro;
+        try {
+            futuro = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return conContexto.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (TaskRejectedException e) {
+            log.warn("Pool de IA saturado, se rechaza la petición: {}", e.getMessage());
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                  .header(HttpHeaders.RETRY_AFTER, String.valueOf(reintentarSegundos))
+                                  .build());
+        }
+
+        return futuro.orTimeout(timeoutSegundos, TimeUnit.SECONDS)
+                     .exceptionally(ex -> {
+                         Throwable causa = ex instanceof CompletionException && ex.getCause() != null
+                                 ? ex.getCause() : ex;
+                         if (causa instanceof TimeoutException) {
+                             log.warn("Petición de IA cancelada tras {} s", timeoutSegundos);
+                             return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+                         }
+                         throw ex instanceof CompletionException ce ? ce : new CompletionException(causa);
+                     });
+    }
+}
@@ -0,0 +1,221 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import com.caloria.model.RegistroComida;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+
+/**
+ * Exporta el historial completo de un usuario: sus días y, cuando existen,
+ * las comidas registradas en cada uno.
+ *
+ * Días y comidas se leen con dos cursores de MongoDB ordenados por fecha
+ * (por los índices usuarioId + fecha) y se intercalan mientras se escriben
+ * en la salida a través de un búfer de tamaño fijo, de modo que la memoria
+ * usada no depende de la longitud del historial.
+ *
+ * Cada día va seguido de sus comidas. Las comidas de días sin documento
+ * en {@code dias} también se exportan, en su posición cronológica.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportacionHistorialService {
+
+    /** Tamaño del búfer de escritura: cada vez que se llena se envía un trozo de la respuesta */
+    private static final int TAMANO_BUFER = 16 * 1024;
+
+    private static final String CABECERA_CSV =
+            "tipo,fecha,hora,texto,calorias,proteinasG,carbohidratosG,grasasG,consejosGenerados";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    /** Formatos de exportación admitidos */
+    public enum Formato {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String tipoContenido;
+        private final String extension;
+
+        Formato(String tipoContenido, String extension) {
+            this.tipoContenido = tipoContenido;
+            this.extension     = extension;
+        }
+
+        public String getTipoContenido() {
+            return tipoContenido;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @param valor Nombre del formato ("ndjson" o "csv", sin distinguir mayúsculas)
+         * @return Formato correspondiente
+         * @throws ResponseStatusException 400 si el formato no es válido
+         */
+        public static Formato desde(String valor) {
+            try {
+                return valueOf(valor.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(BAD_REQUEST, "Formato no soportado: " + valor);
+            }
+        }
+    }
+
+    /**
+     * Escribe el historial del usuario en la salida indicada.
+     *
+     * @param usuarioId ID del usuario
+     * @param formato Formato de salida
+     * @param salida Flujo de salida (p. ej. el de la respuesta HTTP); no se cierra
+     * @throws IOException si falla la escritura (p. ej. el cliente cortó la conexión)
+     */
+    public void exportar(String usuarioId, Formato formato, OutputStream salida) throws IOException {
+        Query dias = new Query(Criteria.where("usuarioId").is(usuarioId))
+                .with(Sort.by("fecha"));
+        dias.fields().include("fecha", "horaInicioDia", "proteinasConsumidas", "carbohidratosConsumidos",
+                              "grasasConsumidas", "caloriasConsumidas", "consejosGenerados");
+
+        Query comidas = new Query(Criteria.where("usuarioId").is(usuarioId))
+                .with(Sort.by("fechaDiaNutricional"));
+        comidas.fields().include("fechaDiaNutricional", "fechaIngreso", "textoOriginal",
+                                 "totales", "caloriasTotales");
+        if (formato == Formato.NDJSON) {
+            comidas.fields().include("alimentos");
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFER);
+        try (Stream<Dia> streamDias = mongoTemplate.stream(dias, Dia.class);
+             Stream<RegistroComida> streamComidas = mongoTemplate.stream(comidas, RegistroComida.class)) {
+
+            if (formato == Formato.CSV) {
+                out.write(CABECERA_CSV);
+                out.write('\n');
+            }
+
+            Iterator<Dia> itDias = streamDias.iterator();
+            Iterator<RegistroComida> itComidas = streamComidas.iterator();
+            RegistroComida comida = itComidas.hasNext() ? itComidas.next() : null;
+
+            while (itDias.hasNext()) {
+                Dia dia = itDias.next();
+                String fecha = dia.getFecha().toString();
+                // Comidas de días anteriores sin documento propio
+                while (comida != null && comida.getFechaDiaNutricional().compareTo(fecha) < 0) {
+                    escribir(out, formato, comida);
+                    comida = itComidas.hasNext() ? itComidas.next() : null;
+                }
+                escribir(out, formato, dia);
+                while (comida != null && comida.getFechaDiaNutricional().equals(fecha)) {
+                    escribir(out, formato, comida);
+                    comida = itComidas.hasNext() ? itComidas.next() : null;
+                }
+            }
+            while (comida != null) {
+                escribir(out, formato, comida);
+                comida = itComidas.hasNext() ? itComidas.next() : null;
+            }
+        }
+        out.flush();
+    }
+
+    private void escribir(Writer out, Formato formato, Dia dia) throws IOException {
+        if (formato == Formato.CSV) {
+            csv(out, "dia", dia.getFecha().toString(), str(dia.getHoraInicioDia()), "",
+                dia.getCaloriasConsumidas(), dia.getProteinasConsumidas(),
+                dia.getCarbohidratosConsumidos(), dia.getGrasasConsumidas(), dia.getConsejosGenerados());
+            return;
+        }
+        Map<String, Object> linea = new LinkedHashMap<>();
+        linea.put("tipo", "dia");
+        linea.put("fecha", dia.getFecha().toString());
+        linea.put("horaInicioDia", str(dia.getHoraInicioDia()));
+        linea.put("calorias", dia.getCaloriasConsumidas());
+        linea.put("proteinasG", dia.getProteinasConsumidas());
+        linea.put("carbohidratosG", dia.getCarbohidratosConsumidos());
+        linea.put("grasasG", dia.getGrasasConsumidas());
+        linea.put("consejosGenerados", dia.getConsejosGenerados());
+        json(out, linea);
+    }
+
+    private void escribir(Writer out, Formato formato, RegistroComida comida) throws IOException {
+        double prot  = comida.getTotales() != null ? comida.getTotales().getProteinasG() : 0;
+        double carb  = comida.getTotales() != null ? comida.getTotales().getCarbohidratosG() : 0;
+        double grasa = comida.getTotales() != null ? comida.getTotales().getGrasasG() : 0;
+        if (formato == Formato.CSV) {
+            csv(out, "comida", comida.getFechaDiaNutricional(), str(comida.getFechaIngreso()),
+                comida.getTextoOriginal(), comida.getCaloriasTotales(), prot, carb, grasa, null);
+            return;
+        }
+        Map<String, Object> linea = new LinkedHashMap<>();
+        linea.put("tipo", "comida");
+        linea.put("fecha", comida.getFechaDiaNutricional());
+        linea.put("fechaIngreso", str(comida.getFechaIngreso()));
+        linea.put("texto", comida.getTextoOriginal());
+        linea.put("calorias", comida.getCaloriasTotales());
+        linea.put("proteinasG", prot);
+        linea.put("carbohidratosG", carb);
+        linea.put("grasasG", grasa);
+        linea.put("alimentos", comida.getAlimentos());
+        json(out, linea);
+    }
+
+    private void json(Writer out, Map<String, Object> linea) throws IOException {
+        out.write(objectMapper.writeValueAsString(linea));
+        out.write('\n');
+    }
+
+    private static void csv(Writer out, Object... campos) throws IOException {
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(escaparCsv(campos[i]));
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Escapa un valor CSV (RFC 4180): entre comillas si contiene comas,
+     * comillas o saltos de línea, duplicando las comillas internas.
+     */
+    private static String escaparCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0
+                && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
+        }
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+
+    private static String str(Object valor) {
+        return valor != null ? valor.toString() : null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.caloria.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+
+/**
+ * Cifra y verifica contraseñas con BCrypt en el pool {@code hashExecutor}.
+ *
+ * El hilo de la petición espera el resultado, pero el cálculo se hace en un
+ * pool con tantos hilos como núcleos: como mucho esos hash consumen CPU a la vez.
+ * Si el pool y su cola están llenos se responde 503 en lugar de encolar sin límite.
+ *
+ * Métricas: {@code hash.duracion} (etiqueta {@code operacion}: cifrar o verificar,
+ * sin contar la espera en cola), {@code hash.cola.tamano} y {@code hash.rechazos}.
+ */
+@Slf4j
+@Service
+public class HashContrasenasService {
+
+    /** Coste guardado en un hash BCrypt: "$2a$10$..." */
+    private static final Pattern COSTE = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolTaskExecutor executor;
+    private final int coste;
+
+    private final Timer cifrados;
+    private final Timer verificaciones;
+    private final Counter rechazos;
+
+    public HashContrasenasService(PasswordEncoder passwordEncoder,
+                                  @Qualifier("hashExecutor") ThreadPoolTaskExecutor executor,
+                                  MeterRegistry registry,
+                                  @Value("${hash.bcrypt.coste:10}") int coste) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor        = executor;
+        this.coste           = coste;
+        this.cifrados        = registry.timer("hash.duracion", "operacion", "cifrar");
+        this.verificaciones  = registry.timer("hash.duracion", "operacion", "verificar");
+        this.rechazos        = registry.counter("hash.rechazos");
+        registry.gauge("hash.cola.tamano", executor,
+                       e -> e.getThreadPoolExecutor().getQueue().size());
+    }
+
+    /**
+     * Cifra una contraseña con el coste configurado.
+     *
+     * @param contrasena Contraseña en texto plano
+     * @return Hash BCrypt
+     * @throws ResponseStatusException 503 si el pool de hash está saturado
+     */
+    public String cifrar(String contrasena) {
+        return ejecutar(() -> cifrados.recordCallable(() -> passwordEncoder.encode(contrasena)));
+    }
+
+    /**
+     * Comprueba una contraseña contra su hash.
+     *
+     * @param contrasena Contraseña en texto plano
+     * @param hash Hash BCrypt guardado
+     * @return true si coinciden
+     * @throws ResponseStatusException 503 si el pool de hash está saturado
+     */
+    public boolean verificar(String contrasena, String hash) {
+        return ejecutar(() -> verificaciones.recordCallable(() -> passwordEncoder.matches(contrasena, hash)));
+    }
+
+    /**
+     * Indica si un hash se generó con un coste distinto del configurado
+     * ({@code hash.bcrypt.coste}), y por tanto conviene volver a cifrar la contraseña.
+     *
+     * @param hash Hash BCrypt guardado
+     * @return true si el coste del hash no es el actual
+     */
+    public boolean requiereRecifrado(String hash) {
+        Matcher m = COSTE.matcher(hash);
+        return m.find() && Integer.parseInt(m.group(1)) != coste;
+    }
+
+    /**
+     * Ejecuta un cálculo en el pool de hash y espera su resultado.
+     */
+    private <T> T ejecutar(Callable<T> calculo) {
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(calculo);
+        } catch (TaskRejectedException e) {
+            rechazos.increment();
+            log.warn("Pool de hash saturado, se rechaza la petición");
+            throw new ResponseStatusException(SERVICE_UNAVAILABLE, "Servicio saturado, inténtalo de nuevo");
+        }
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(SERVICE_UNAVAILABLE, "Petición interrumpida");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Error al calcular el hash", e.getCause());
+        }
+    }
+}
@@ -9,7 +9,9 @@ import com.caloria.dto.AlimentoDTO;
 import com.caloria.dto.MacrosDTO;
 import com.caloria.model.Alimento;
 import com.caloria.model.CatalogoAlimento;
+import com.caloria.utils.IndiceTrigramas;
 import com.caloria.utils.RoundingUtils;
+import com.caloria.utils.TextoUtils;
 
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
@@ -17,10 +19,23 @@ import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 
 /**
@@ -36,7 +51,8 @@ import org.springframework.stereotype.Service;
  * </ul>
  *
  * Utiliza los asistentes configurados en OpenAI Playground para responder
- * a prompts específicos definidos por el desarrollador.
+ * a prompts específicos definidos por el desarrollador. Las respuestas válidas
+ * se guardan en {@link CacheRespuestasIA} para no repetir consultas idénticas.
  *
  * @see com.caloria.dto.AlimentoDTO
  * @see com.caloria.model.Alimento
@@ -48,8 +64,36 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class IAService {
     private final OkHttpClient okHttpClientWithHeader;
-    private final DiaService diaService;
     private final CatalogoAlimentoService catalogoService;
+    private final CacheRespuestasIA cache;
+    private final PersistenciaComidaService persistencia;
+
+    /** Similitud mínima para emparejar un nombre del usuario con una clave de la IA */
+    @Value("${catalogo.alias.similitud-minima:0.3}")
+    private double umbralAlias;
+
+    /** Segundos durante los que se recuerda un nombre al que la IA respondió con error */
+    @Value("${ia.cache-negativa.segundos:120}")
+    private long segundosCacheNegativa;
+
+    /** Espera antes de la primera consulta del estado de una ejecución */
+    @Value("${ia.run.espera-inicial-ms:250}")
+    private long esperaInicialMs;
+
+    /** Espera máxima entre dos consultas del estado de una ejecución */
+    @Value("${ia.run.espera-maxima-ms:2000}")
+    private long esperaMaximaMs;
+
+    /** Tiempo máximo que se espera a que una ejecución del asistente termine */
+    @Value("${ia.run.timeout-segundos:60}")
+    private long timeoutSegundos;
+
+    /** Consultas a la IA en curso por nombre canónico, compartidas entre peticiones */
+    private final Map<String, CompletableFuture<CatalogoAlimento>> consultasEnCurso = new ConcurrentHashMap<>();
+
+    /** Caché negativa: nombre canónico → último error de la IA para ese nombre */
+    private final Map<String, ErrorReciente> erroresRecientes = new ConcurrentHashMap<>();
+
     private OpenAI openai;
     private Assistant assistant;
     private Assistant assistantRecetas;
@@ -96,6 +140,9 @@ public class IAService {
      * La IA responde con un JSON con un listado de recetas distribuidas en el número
      * de comidas indicado, intentando respetar los objetivos nutricionales.
      *
+     * Los macros se redondean a tramos de 50 kcal y 5 g antes de enviarlos, de modo
+     * que peticiones casi idénticas comparten la respuesta guardada en {@link CacheRespuestasIA}.
+     *
      * @param preferencias Lista de alimentos o estilos alimentarios preferidos (puede ser vacía)
      * @param alergias Lista de ingredientes a evitar estrictamente
      * @param macrosRest Objeto que representa los macronutrientes restantes del usuario
@@ -110,58 +157,48 @@ public class IAService {
         int numComidas
     ) throws InterruptedException {
     	
+    	// Preferencias y alergias normalizadas y ordenadas: el orden no cambia la petición
+        List<String> prefs = normalizarLista(preferencias);
+        List<String> alergs = normalizarLista(alergias);
+
+        // Macros redondeados a tramos para aprovechar la caché
+        long kcal  = tramo(macrosRest.getCalorias(), 50);
+        long prot  = tramo(macrosRest.getProteinasG(), 5);
+        long carb  = tramo(macrosRest.getCarbohidratosG(), 5);
+        long gras  = tramo(macrosRest.getGrasasG(), 5);
+
+        String claveCache = "recetas:" + prefs + "|" + alergs
+                + "|" + kcal + "|" + prot + "|" + carb + "|" + gras + "|" + numComidas;
+        Optional<String> enCache = cache.obtener(claveCache);
+        if (enCache.isPresent()) {
+            log.info("[IAService.generarRecetas] Respuesta servida desde caché");
+            return enCache.get();
+        }
+
     	// Construcción del payload en formato JSON con datos del usuario
         JSONObject payload = new JSONObject();
-        payload.put("preferencias", preferencias);
-        payload.put("alergias", alergias);
+        payload.put("preferencias", prefs);
+        payload.put("alergias", alergs);
         
         // Inserta los macronutrientes restantes en el objeto de macros
         JSONObject m = new JSONObject();
-        m.put("caloriasRestantes",   macrosRest.getCalorias());
-        m.put("proteinasRestantes",  macrosRest.getProteinasG());
-        m.put("carbohidratosRestantes", macrosRest.getCarbohidratosG());
-        m.put("grasasRestantes",     macrosRest.getGrasasG());
+        m.put("caloriasRestantes",   kcal);
+        m.put("proteinasRestantes",  prot);
+        m.put("carbohidratosRestantes", carb);
+        m.put("grasasRestantes",     gras);
         payload.put("macrosRestantes", m);
         
         // Número de recetas a generar
         payload.put("numComidas", numComidas);
         
         
-        // Crea un nuevo hilo de conversación con el asistente
-        Thread thread = openai.threads().create();
-        openai.threads().messages(thread).create(
-            CreateThreadMessageRequest.builder()
-                .role(ThreadUser.USER)
-                .content(payload.toString()) // Envía el JSON como texto al asistente
-                .build()
-        );
         // Ejecuta la petición al asistente configurado para recetas
-        Run run = openai.threads().runs(thread)
-                          .create(CreateRunRequest.builder()
-                              .assistant(assistantRecetas)
-                              .build());
-        
-        // Espera bloqueante hasta que la IA complete la ejecución
-        while (!run.getStatus().isTerminal()) {
-            java.lang.Thread.sleep(1000);
-            run = openai.threads().runs(thread).retrieve(run);
+        String respuesta = ejecutarAsistente(assistantRecetas, payload.toString());
+        if (!esError(respuesta)) {
+            cache.guardar(claveCache, respuesta);
         }
-        
-        // Recoge las respuestas del asistente paso a paso
-        StringBuilder sb = new StringBuilder();
-        for (RunStep step : openai.threads().runs(thread).steps(run).list().getData()) {
-            if (step.getType() != RunStep.Type.MESSAGE_CREATION) continue;
-            MessageCreationDetails det = (MessageCreationDetails) step.getStepDetails();
-            ThreadMessage msg = openai.threads().messages(thread)
-                                       .retrieve(det.getMessageCreation().getMessageId());
-            msg.getContent().stream()
-               .filter(c -> c.getType() == ThreadMessageContent.Type.TEXT)
-               .map(c -> ((TextContent) c).getText().getValue())
-               .forEach(sb::append);
-        }
-        
+
         // Logging y devolución de la respuesta
-        String respuesta = sb.toString();
         log.info("=== [IAService.generarRecetas] JSON recibido de la IA ===");
         log.info(respuesta);
         log.info("========================================================");
@@ -171,9 +208,19 @@ public class IAService {
     
     /**
      * Analiza una lista de alimentos ingresados por el usuario y calcula sus macronutrientes.
-     * 
+     *
      * Si el alimento ya existe en el catálogo local, se calcula directamente su aporte.
+     * Si no hay coincidencia exacta pero sí una aproximada (por trigramas), se usa esa
+     * y se informa en la respuesta con los campos {@code coincidencia} y {@code similitud}.
      * En caso contrario, se consulta al asistente de IA, que responde con valores estimados.
+     * Cuando la IA devuelve un alimento con otro nombre, se aprende un alias para
+     * que la próxima vez se resuelva directamente desde el catálogo.
+     *
+     * Los alimentos con gramos se consultan a la IA por 100 g y por nombre canónico,
+     * de modo que peticiones concurrentes del mismo alimento comparten una única
+     * ejecución del asistente. Los nombres a los que la IA respondió con error
+     * se recuerdan durante {@code ia.cache-negativa.segundos}.
+     *
      * Todos los alimentos procesados se registran en la base de datos si no existían,
      * y se asignan al día correspondiente del usuario.
      *
@@ -184,131 +231,533 @@ public class IAService {
      */
     public String analizarComida(List<AlimentoDTO> dtos, String usuarioId) throws InterruptedException {
         log.info("Iniciando análisis de {} items para usuario {}", dtos.size(), usuarioId);
-        
-        // Clasifica alimentos en encontrados (en catálogo) y faltantes (requieren IA)
+
+        // Resuelve toda la comida contra el catálogo en una sola consulta
+        Map<String, CatalogoAlimento> catalogo = catalogoService.resolverLote(dtos);
+
+        // Coincidencias aproximadas (por trigramas) para informar al cliente
+        Map<String, IndiceTrigramas.Coincidencia<CatalogoAlimento>> aproximadas = new HashMap<>();
+
+        // Clasifica alimentos en encontrados (en catálogo), consultables por nombre
+        // (la IA devuelve valores por 100 g) y sin gramos (la IA estima la porción)
         List<AlimentoDTO> encontrados = new ArrayList<>();
-        List<AlimentoDTO> faltantes  = new ArrayList<>();
+        List<AlimentoDTO> porNombre   = new ArrayList<>();
+        List<AlimentoDTO> sinGramos   = new ArrayList<>();
         for (AlimentoDTO dto : dtos) {
-            boolean existe = catalogoService.obtenerPorNombre(dto.getNombre()).isPresent();
-            if (dto.getGramos() > 0 && existe) {
+            String clave = TextoUtils.canonicalizarAlimento(dto.getNombre());
+            boolean existe = catalogo.containsKey(clave);
+            if (!existe && dto.getGramos() > 0) {
+                // Sin coincidencia exacta: intenta una aproximada antes de recurrir a la IA
+                Optional<IndiceTrigramas.Coincidencia<CatalogoAlimento>> similar =
+                        catalogoService.buscarSimilar(dto.getNombre());
+                if (similar.isPresent()) {
+                    log.debug("'{}' resuelto como '{}' (similitud {})",
+                              dto.getNombre(), similar.get().valor().getNombre(), similar.get().similitud());
+                    catalogo.put(clave, similar.get().valor());
+                    aproximadas.put(clave, similar.get());
+                    existe = true;
+                }
+            }
+            if (dto.getGramos() <= 0) {
+                sinGramos.add(dto);
+            } else if (existe) {
                 encontrados.add(dto);
             } else {
-                faltantes.add(dto);
+                porNombre.add(dto);
+            }
+        }
+
+        // Nombres a los que la IA respondió con error hace poco: no se vuelve a consultar
+        for (AlimentoDTO dto : porNombre) {
+            String clave = TextoUtils.canonicalizarAlimento(dto.getNombre());
+            ErrorReciente error = erroresRecientes.get(clave);
+            if (error == null) continue;
+            if (error.vigente()) {
+                log.info("'{}' está en la caché negativa, se omite la IA", dto.getNombre());
+                return new JSONObject().put("error", error.mensaje()).toString();
+            }
+            erroresRecientes.remove(clave, error);
+        }
+
+        // Se une a consultas en curso del mismo alimento o abre una nueva
+        Map<String, CompletableFuture<CatalogoAlimento>> consultas = new LinkedHashMap<>();
+        Map<String, String> propias = new LinkedHashMap<>();   // clave → nombre a enviar
+        for (AlimentoDTO dto : porNombre) {
+            String clave = TextoUtils.canonicalizarAlimento(dto.getNombre());
+            if (consultas.containsKey(clave)) continue;
+            CompletableFuture<CatalogoAlimento> nueva = new CompletableFuture<>();
+            CompletableFuture<CatalogoAlimento> enCurso = consultasEnCurso.putIfAbsent(clave, nueva);
+            if (enCurso == null) {
+                consultas.put(clave, nueva);
+                propias.put(clave, dto.getNombre());
+            } else {
+                log.debug("'{}' ya se está consultando a la IA, se comparte el resultado", dto.getNombre());
+                consultas.put(clave, enCurso);
             }
         }
 
         JSONObject respuesta = new JSONObject();
         List<Alimento> toRegister = new ArrayList<>();
+        List<CatalogoAlimento> nuevosEnCatalogo = new ArrayList<>();
+        Map<String, String> aliasNuevos = new LinkedHashMap<>();
+
+        // Si hay alimentos propios o sin gramos, se consulta a la IA en una sola ejecución
+        JSONObject iaSinGramos = new JSONObject();
+        if (!propias.isEmpty() || !sinGramos.isEmpty()) {
+            iaSinGramos = consultarAlimentos(propias, consultas, sinGramos, aliasNuevos);
+            if (iaSinGramos.has("error")) {
+                return iaSinGramos.toString();
+            }
+        }
+
+        // Espera las consultas (propias o compartidas) y recoge los valores por 100 g
+        for (Map.Entry<String, CompletableFuture<CatalogoAlimento>> e : consultas.entrySet()) {
+            try {
+                CatalogoAlimento cat = e.getValue().get();
+                if (cat != null) {
+                    catalogo.put(e.getKey(), cat);
+                    if (propias.containsKey(e.getKey())) {
+                        nuevosEnCatalogo.add(cat);
+                    }
+                }
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof ErrorIA errorIA) {
+                    return new JSONObject().put("error", errorIA.getMessage()).toString();
+                }
+                if (ex.getCause() instanceof ResponseStatusException rse) {
+                    throw rse;
+                }
+                throw new IllegalStateException("Falló la consulta a la IA", ex.getCause());
+            }
+        }
+
         int idx = 1;
-        
+
         // Procesa los alimentos encontrados usando el catálogo
         for (AlimentoDTO dto : encontrados) {
-            CatalogoAlimento cat = catalogoService.obtenerPorNombre(dto.getNombre()).get();
-            double factor = dto.getGramos() / 100.0;
-            double prot   = RoundingUtils.round(cat.getProteinasPor100g() * factor, 1);
-            double carb   = RoundingUtils.round(cat.getCarbohidratosPor100g() * factor, 1);
-            double gras   = RoundingUtils.round(cat.getGrasasPor100g()        * factor, 1);
+            String clave = TextoUtils.canonicalizarAlimento(dto.getNombre());
+            Alimento raw = calcularPorcion(dto, catalogo.get(clave));
+
+            JSONObject item = new JSONObject()
+                    .put("proteinas", raw.getProteinasG())
+                    .put("carbohidratos", raw.getCarbohidratosG())
+                    .put("grasas",     raw.getGrasasG());
+
+            // Informa al cliente qué alimento del catálogo se usó si no fue exacto
+            IndiceTrigramas.Coincidencia<CatalogoAlimento> aprox = aproximadas.get(clave);
+            if (aprox != null) {
+                item.put("coincidencia", raw.getNombre())
+                    .put("similitud", RoundingUtils.round(aprox.similitud(), 2));
+            }
+            respuesta.put("alimento_" + idx, item);
+            toRegister.add(raw);
+
+            idx++;
+        }
+
+        // Procesa los alimentos resueltos por la IA (valores por 100 g escalados a la porción)
+        for (AlimentoDTO dto : porNombre) {
+            CatalogoAlimento cat = catalogo.get(TextoUtils.canonicalizarAlimento(dto.getNombre()));
+            if (cat == null) {
+                log.warn("La IA no devolvió valores para '{}'", dto.getNombre());
+                continue;
+            }
+            Alimento raw = calcularPorcion(dto, cat);
+            respuesta.put("alimento_" + idx, new JSONObject()
+                    .put("proteinas", raw.getProteinasG())
+                    .put("carbohidratos", raw.getCarbohidratosG())
+                    .put("grasas",     raw.getGrasasG())
+                    .put("gramos",     raw.getGramos())
+            );
+            toRegister.add(raw);
+
+            idx++;
+        }
+
+        // Transforma cada entrada sin gramos (porción estimada por la IA) en un objeto persistible
+        for (String key : iaSinGramos.keySet()) {
+            JSONObject d = iaSinGramos.getJSONObject(key);
+            double prot = RoundingUtils.round(d.getDouble("proteinas"), 1);
+            double carb = RoundingUtils.round(d.getDouble("carbohidratos"), 1);
+            double gras = RoundingUtils.round(d.getDouble("grasas"), 1);
+            int grs     = d.has("gramos") ? d.getInt("gramos") : 0;
 
             respuesta.put("alimento_" + idx, new JSONObject()
                     .put("proteinas", prot)
                     .put("carbohidratos", carb)
                     .put("grasas",     gras)
+                    .put("gramos",     grs)
             );
 
             Alimento raw = new Alimento();
-            raw.setNombre(cat.getNombre());
-            raw.setGramos((int) Math.round(dto.getGramos()));
+            raw.setNombre(key);
+            raw.setGramos(grs);
             raw.setProteinasG(prot);
             raw.setCarbohidratosG(carb);
             raw.setGrasasG(gras);
             raw.setCalorias(CaloriasCalculator.calcularCalorias(prot, carb, gras));
             toRegister.add(raw);
+            if (grs > 0) {
+                nuevosEnCatalogo.add(raw.toCatalogo());
+            }
 
             idx++;
         }
-        // Si hay alimentos no encontrados, se consulta a la IA
-        if (!faltantes.isEmpty()) {
+
+        // Almacena los alimentos y registra los macros en segundo plano
+        String salida = respuesta.toString();
+        String textoOriginal = dtos.stream()
+                .map(d -> d.getNombre() + " " + Math.round(d.getGramos()) + " g")
+                .collect(Collectors.joining(", "));
+        boolean procesadoPorIA = !porNombre.isEmpty() || !sinGramos.isEmpty();
+        persistencia.encolar(new PersistenciaComidaService.Trabajo(
+                usuarioId, aliasNuevos, nuevosEnCatalogo, toRegister, textoOriginal, procesadoPorIA));
+
+        return salida;
+    }
+
+    /**
+     * Consulta a la IA, en una única ejecución del asistente, los alimentos cuya
+     * consulta abrió esta petición (por 100 g) y los que llegaron sin gramos.
+     *
+     * Completa las consultas propias para que las peticiones concurrentes que
+     * esperan el mismo alimento reciban el resultado, y las retira del mapa de
+     * consultas en curso al terminar, haya ido bien o no.
+     *
+     * @param propias Consultas abiertas por esta petición: clave canónica → nombre
+     * @param consultas Futuros de todas las consultas de la petición
+     * @param sinGramos Alimentos sin gramos, cuya porción estima la IA
+     * @param aliasNuevos Mapa donde se acumulan los alias aprendidos
+     * @return JSON con las entradas de los alimentos sin gramos, o un JSON con "error"
+     * @throws InterruptedException si se interrumpe la espera del asistente
+     */
+    private JSONObject consultarAlimentos(
+        Map<String, String> propias,
+        Map<String, CompletableFuture<CatalogoAlimento>> consultas,
+        List<AlimentoDTO> sinGramos,
+        Map<String, String> aliasNuevos
+    ) throws InterruptedException {
+        try {
+            // Los alimentos con gramos se piden por 100 g: el resultado no depende de la porción
+            List<String> nombres = new ArrayList<>();
             StringBuilder prompt = new StringBuilder("RgstrAlim");
-            for (AlimentoDTO dto : faltantes) {
+            for (String nombre : propias.values()) {
+                prompt.append(" ").append(nombre).append(" ").append(100);
+                nombres.add(nombre);
+            }
+            for (AlimentoDTO dto : sinGramos) {
                 prompt.append(" ")
                       .append(dto.getNombre())
                       .append(" ")
                       .append((int) Math.round(dto.getGramos()));
+                nombres.add(dto.getNombre());
             }
             log.info("Enviando a IA: {}", prompt);
 
-            Thread thread = openai.threads().create();
-            openai.threads().messages(thread).create(
-                CreateThreadMessageRequest.builder()
-                    .role(ThreadUser.USER)
-                    .content(prompt.toString())
-                    .build()
-            );
-            Run run = openai.threads().runs(thread)
-                              .create(CreateRunRequest.builder().assistant(assistant).build());
-            while (!run.getStatus().isTerminal()) {
-                java.lang.Thread.sleep(1000);
-                run = openai.threads().runs(thread).retrieve(run);
+            // Consulta la caché con el prompt normalizado antes de ejecutar el asistente
+            String claveCache = claveAlimentos(propias.keySet(), sinGramos);
+            String texto = cache.obtener(claveCache).orElse(null);
+            if (texto == null) {
+                texto = ejecutarAsistente(assistant, prompt.toString());
+                if (!esError(texto)) {
+                    cache.guardar(claveCache, texto);
+                }
+            } else {
+                log.info("Respuesta de la IA servida desde caché");
             }
 
-            StringBuilder sb = new StringBuilder();
-            for (RunStep step : openai.threads().runs(thread).steps(run).list().getData()) {
-                if (step.getType() != RunStep.Type.MESSAGE_CREATION) continue;
-                MessageCreationDetails det = (MessageCreationDetails) step.getStepDetails();
-                ThreadMessage msg = openai.threads().messages(thread)
-                                           .retrieve(det.getMessageCreation().getMessageId());
-                msg.getContent().stream()
-                   .filter(c -> c.getType() == ThreadMessageContent.Type.TEXT)
-                   .map(c -> ((TextContent) c).getText().getValue())
-                   .forEach(sb::append);
-            }
-            
             // Verifica si hubo error y parsea respuesta JSON con nutrientes
-            JSONObject iaJson = new JSONObject(sb.toString());
+            JSONObject iaJson = new JSONObject(texto);
             if (iaJson.has("error")) {
                 String mensaje = iaJson.getString("error");
                 log.warn("La IA devolvió un error: {}", mensaje);
-                return iaJson.toString();
+                // Sólo se puede atribuir el error a un nombre si era el único consultado
+                if (nombres.size() == 1 && propias.size() == 1) {
+                    String clave = propias.keySet().iterator().next();
+                    erroresRecientes.put(clave, new ErrorReciente(mensaje,
+                            System.currentTimeMillis() + segundosCacheNegativa * 1000L));
+                }
+                propias.keySet().forEach(clave -> consultas.get(clave).completeExceptionally(new ErrorIA(mensaje)));
+                return iaJson;
             }
-            
-         // Transforma cada entrada en un objeto persistible
-            for (String key : iaJson.keySet()) {
-                JSONObject d = iaJson.getJSONObject(key);
-                double prot = RoundingUtils.round(d.getDouble("proteinas"), 1);
-                double carb = RoundingUtils.round(d.getDouble("carbohidratos"), 1);
-                double gras = RoundingUtils.round(d.getDouble("grasas"), 1);
-                int grs     = d.has("gramos") ? d.getInt("gramos") : 0;
-
-                respuesta.put("alimento_" + idx, new JSONObject()
-                        .put("proteinas", prot)
-                        .put("carbohidratos", carb)
-                        .put("grasas",     gras)
-                        .put("gramos",     grs)
-                );
-
-                Alimento raw = new Alimento();
-                raw.setNombre(key);
-                raw.setGramos(grs);
-                raw.setProteinasG(prot);
-                raw.setCarbohidratosG(carb);
-                raw.setGrasasG(gras);
-                raw.setCalorias(CaloriasCalculator.calcularCalorias(prot, carb, gras));
-                toRegister.add(raw);
-
-                idx++;
+
+            // Empareja nombres del usuario con claves de la IA y aprende alias.
+            // El alias es global: sólo se aprende si los nombres superan la similitud mínima,
+            // también cuando el par salió de la única pareja restante.
+            Map<String, String> pares = emparejar(nombres, iaJson.keySet());
+            pares.forEach((nombre, clave) -> {
+                if (!TextoUtils.canonicalizarAlimento(nombre).equals(TextoUtils.canonicalizarAlimento(clave))
+                        && IndiceTrigramas.similitud(nombre, clave) >= umbralAlias) {
+                    aliasNuevos.put(nombre, clave);
+                }
+            });
+
+            // Completa las consultas propias; lo que queda son los alimentos sin gramos
+            for (Map.Entry<String, String> e : propias.entrySet()) {
+                String claveIA = pares.get(e.getValue());
+                CatalogoAlimento cat = null;
+                if (claveIA != null && iaJson.has(claveIA)) {
+                    cat = porCienGramos(claveIA, iaJson.getJSONObject(claveIA));
+                    iaJson.remove(claveIA);
+                }
+                consultas.get(e.getKey()).complete(cat);
+            }
+            return iaJson;
+        } catch (RuntimeException | InterruptedException e) {
+            // Las peticiones que comparten la consulta reciben el mismo error (504, 502...)
+            propias.keySet().forEach(clave -> consultas.get(clave).completeExceptionally(e));
+            throw e;
+        } finally {
+            // Nunca deja esperando a otras peticiones, ni siquiera ante un error inesperado
+            for (String clave : propias.keySet()) {
+                CompletableFuture<CatalogoAlimento> futuro = consultas.get(clave);
+                futuro.completeExceptionally(new IllegalStateException("La consulta a la IA no terminó"));
+                consultasEnCurso.remove(clave, futuro);
             }
         }
-        // Almacena los alimentos y registra los macros en segundo plano
-        String salida = respuesta.toString();
-        CompletableFuture.runAsync(() -> {
-            for (Alimento a : toRegister) {
-                catalogoService.guardarSiNoExiste(a);
-                diaService.registrarAlimento(usuarioId,
-                    new MacrosDTO(a.getProteinasG(), a.getCarbohidratosG(), a.getGrasasG(), a.getCalorias()));
+    }
+
+    /**
+     * Ejecuta el asistente indicado sobre un hilo nuevo con un único mensaje
+     * y devuelve el texto de sus respuestas concatenado.
+     *
+     * El estado de la ejecución se consulta con espera exponencial: primero a los
+     * {@code ia.run.espera-inicial-ms} y luego multiplicando la espera por 1.5 hasta
+     * {@code ia.run.espera-maxima-ms}. Así las ejecuciones cortas se detectan casi
+     * en cuanto terminan y las largas no generan una petición por segundo.
+     * Si no termina en {@code ia.run.timeout-segundos}, se cancela.
+     *
+     * @param asistente Asistente a ejecutar
+     * @param contenido Mensaje del usuario
+     * @return Texto devuelto por el asistente
+     * @throws InterruptedException si se interrumpe la espera de respuesta
+     * @throws ResponseStatusException 504 si se agota el tiempo, 502 si la ejecución falla
+     */
+    private String ejecutarAsistente(Assistant asistente, String contenido) throws InterruptedException {
+        // Crea un nuevo hilo de conversación con el asistente
+        Thread thread = openai.threads().create();
+        openai.threads().messages(thread).create(
+            CreateThreadMessageRequest.builder()
+                .role(ThreadUser.USER)
+                .content(contenido)
+                .build()
+        );
+        Run run = openai.threads().runs(thread)
+                          .create(CreateRunRequest.builder().assistant(asistente).build());
+
+        // Espera con retroceso exponencial hasta que la IA complete la ejecución
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.SECONDS.toNanos(timeoutSegundos);
+        long espera = esperaInicialMs;
+        int consultas = 0;
+        while (!run.getStatus().isTerminal()) {
+            long restante = TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime());
+            if (restante <= 0) {
+                cancelar(thread, run);
+                throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                        "El asistente no respondió en " + timeoutSegundos + " s");
             }
-            log.info("Persistencia completada ({} items)", toRegister.size());
-        });
+            java.lang.Thread.sleep(Math.min(espera, restante));
+            espera = Math.min((long) (espera * 1.5), esperaMaximaMs);
+            run = openai.threads().runs(thread).retrieve(run);
+            consultas++;
+        }
+        log.debug("Ejecución {} terminada ({}) en {} ms tras {} consultas de estado",
+                  run.getId(), run.getStatus(),
+                  TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), consultas);
 
-        return salida;
+        if (run.getStatus() != RunStatus.COMPLETED) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                    "La ejecución del asistente terminó con estado " + run.getStatus());
+        }
+
+        // Recoge las respuestas del asistente paso a paso
+        StringBuilder sb = new StringBuilder();
+        for (RunStep step : openai.threads().runs(thread).steps(run).list().getData()) {
+            if (step.getType() != RunStep.Type.MESSAGE_CREATION) continue;
+            MessageCreationDetails det = (MessageCreationDetails) step.getStepDetails();
+            ThreadMessage msg = openai.threads().messages(thread)
+                                       .retrieve(det.getMessageCreation().getMessageId());
+            msg.getContent().stream()
+               .filter(c -> c.getType() == ThreadMessageContent.Type.TEXT)
+               .map(c -> ((TextContent) c).getText().getValue())
+               .forEach(sb::append);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Cancela una ejecución que superó el tiempo máximo. Un fallo al cancelar
+     * sólo se registra: la ejecución vencerá igualmente en OpenAI.
+     */
+    private void cancelar(Thread thread, Run run) {
+        try {
+            openai.threads().runs(thread).cancel(run);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo cancelar la ejecución {}: {}", run.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Construye la clave de caché de una consulta de alimentos: nombres canónicos
+     * con sus gramos, ordenados, para que el orden y la forma de escribirlos no importen.
+     *
+     * @param propias Claves canónicas consultadas por 100 g
+     * @param sinGramos Alimentos sin gramos
+     * @return Clave normalizada del prompt
+     */
+    private String claveAlimentos(Collection<String> propias, List<AlimentoDTO> sinGramos) {
+        List<String> partes = new ArrayList<>();
+        propias.forEach(clave -> partes.add(clave + " 100"));
+        sinGramos.forEach(dto -> partes.add(TextoUtils.canonicalizarAlimento(dto.getNombre())
+                + " " + Math.round(dto.getGramos())));
+        partes.sort(null);
+        return "alimentos:" + String.join("|", partes);
+    }
+
+    /**
+     * Normaliza (minúsculas, espacios) y ordena una lista de texto libre.
+     * Admite listas nulas, que se tratan como vacías.
+     */
+    private static List<String> normalizarLista(List<String> valores) {
+        if (valores == null) {
+            return List.of();
+        }
+        return valores.stream()
+                      .map(TextoUtils::normalizar)
+                      .filter(v -> !v.isEmpty())
+                      .sorted()
+                      .collect(Collectors.toList());
+    }
+
+    /**
+     * Redondea un valor al múltiplo más cercano del tramo indicado.
+     */
+    private static long tramo(double valor, int tamano) {
+        return Math.round(valor / tamano) * tamano;
+    }
+
+    /**
+     * Indica si una respuesta de la IA es un JSON con campo "error"
+     * (o no es JSON válido); estas respuestas no se guardan en caché.
+     */
+    private static boolean esError(String respuesta) {
+        try {
+            return new JSONObject(respuesta).has("error");
+        } catch (org.json.JSONException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Calcula el aporte de una porción a partir de los valores por 100 g del catálogo.
+     *
+     * @param dto Alimento ingresado (con gramos)
+     * @param cat Alimento del catálogo
+     * @return Alimento consumido, listo para registrar
+     */
+    private Alimento calcularPorcion(AlimentoDTO dto, CatalogoAlimento cat) {
+        double factor = dto.getGramos() / 100.0;
+        double prot   = RoundingUtils.round(cat.getProteinasPor100g() * factor, 1);
+        double carb   = RoundingUtils.round(cat.getCarbohidratosPor100g() * factor, 1);
+        double gras   = RoundingUtils.round(cat.getGrasasPor100g()        * factor, 1);
+
+        Alimento raw = new Alimento();
+        raw.setNombre(cat.getNombre());
+        raw.setGramos((int) Math.round(dto.getGramos()));
+        raw.setProteinasG(prot);
+        raw.setCarbohidratosG(carb);
+        raw.setGrasasG(gras);
+        raw.setCalorias(CaloriasCalculator.calcularCalorias(prot, carb, gras));
+        return raw;
+    }
+
+    /**
+     * Construye un registro del catálogo a partir de una respuesta de la IA por 100 g.
+     *
+     * @param nombre Nombre devuelto por la IA
+     * @param d Macronutrientes devueltos por la IA
+     * @return CatalogoAlimento con valores por 100 g
+     */
+    private CatalogoAlimento porCienGramos(String nombre, JSONObject d) {
+        double prot = RoundingUtils.oneDecimal(d.getDouble("proteinas"));
+        double carb = RoundingUtils.oneDecimal(d.getDouble("carbohidratos"));
+        double gras = RoundingUtils.oneDecimal(d.getDouble("grasas"));
+
+        CatalogoAlimento cat = new CatalogoAlimento();
+        cat.setNombre(nombre);
+        cat.setNombreNormalizado(TextoUtils.canonicalizarAlimento(nombre));
+        cat.setProteinasPor100g(prot);
+        cat.setCarbohidratosPor100g(carb);
+        cat.setGrasasPor100g(gras);
+        cat.setCaloriasPor100g(RoundingUtils.oneDecimal(CaloriasCalculator.calcularCalorias(prot, carb, gras)));
+        return cat;
+    }
+
+    /**
+     * Empareja los nombres escritos por el usuario con las claves devueltas por la IA.
+     *
+     * Primero se emparejan los que coinciden en forma canónica. Del resto, si queda
+     * un único nombre sin pareja de cada lado, se emparejan directamente (sirve para
+     * esta petición, pero no se aprende como alias si no son parecidos); si quedan
+     * varios, cada nombre del usuario se asocia a la clave más parecida por trigramas,
+     * siempre que supere {@code catalogo.alias.similitud-minima}.
+     *
+     * @param nombres Nombres enviados a la IA
+     * @param clavesIA Claves del JSON devuelto por la IA
+     * @return Mapa nombre del usuario → clave devuelta por la IA
+     */
+    private Map<String, String> emparejar(List<String> nombres, Set<String> clavesIA) {
+        Map<String, String> canonicasIA = new LinkedHashMap<>();
+        for (String clave : clavesIA) {
+            canonicasIA.put(TextoUtils.canonicalizarAlimento(clave), clave);
+        }
+
+        Map<String, String> pares = new LinkedHashMap<>();
+        List<String> usuarioSinPareja = new ArrayList<>();
+        for (String nombre : nombres) {
+            String clave = canonicasIA.remove(TextoUtils.canonicalizarAlimento(nombre));
+            if (clave != null) {
+                pares.put(nombre, clave);
+            } else {
+                usuarioSinPareja.add(nombre);
+            }
+        }
+        List<String> iaSinPareja = new ArrayList<>(canonicasIA.values());
+
+        if (usuarioSinPareja.size() == 1 && iaSinPareja.size() == 1) {
+            pares.put(usuarioSinPareja.get(0), iaSinPareja.get(0));
+            return pares;
+        }
+        for (String nombre : usuarioSinPareja) {
+            String mejor = null;
+            double mejorSimilitud = umbralAlias;
+            for (String clave : iaSinPareja) {
+                double sim = IndiceTrigramas.similitud(nombre, clave);
+                if (sim >= mejorSimilitud) {
+                    mejor = clave;
+                    mejorSimilitud = sim;
+                }
+            }
+            if (mejor != null) {
+                pares.put(nombre, mejor);
+                iaSinPareja.remove(mejor);
+            }
+        }
+        return pares;
+    }
+
+    /** Error devuelto explícitamente por la IA (campo "error" de su respuesta) */
+    private static final class ErrorIA extends RuntimeException {
+        ErrorIA(String mensaje) {
+            super(mensaje);
+        }
+    }
+
+    /** Entrada de la caché negativa: mensaje de error de la IA y su vencimiento */
+    private record ErrorReciente(String mensaje, long expiraEn) {
+        boolean vigente() {
+            return System.currentTimeMillis() < expiraEn;
+        }
     }
 }
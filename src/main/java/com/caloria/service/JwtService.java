@@ -1,8 +1,11 @@
 package com.caloria.service;
 
+import com.caloria.utils.LruCache;
+import com.caloria.utils.TextoUtils;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -11,6 +14,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 
 /**
@@ -21,27 +25,45 @@ import java.util.List;
  * en el archivo de configuración (`application.properties`) bajo la propiedad `jwt.secret`.
  *
  * Los tokens incluyen como `subject` el ID del usuario y un `claim` adicional llamado `roles`.
+ *
+ * Expone los contadores {@code jwt.cache} (etiqueta {@code resultado}) con los
+ * aciertos y fallos de la caché de tokens verificados.
  */
 @Service
 @Slf4j
 public class JwtService {
 
-    /** Clave de al menos 32 caracteres (256 bits) en application.properties */
-    @Value("${jwt.secret}")
-    private String secret;
+    private final Key key;
+
+    /** Parser con la clave ya configurada; es inmutable y seguro entre hilos */
+    private final JwtParser parser;
+
+    /** Tokens ya verificados, por resumen SHA-256 del token */
+    private final LruCache<String, TokenVerificado> verificados;
+
+    private final Counter aciertos;
+    private final Counter fallos;
 
-    private Key key;
+    /** Usuario y caducidad (epoch ms) de un token cuya firma ya se comprobó */
+    private record TokenVerificado(String usuarioId, long expiraEn) {}
 
     /**
-     * Inicializa la clave secreta a partir del valor configurado en la propiedad `jwt.secret`.
-     * 
-     * Este método se ejecuta automáticamente tras la inyección del valor `secret`.
-     * Utiliza codificación UTF-8 y espera una longitud mínima de 32 bytes.
+     * Crea la clave secreta a partir del valor configurado en la propiedad `jwt.secret`
+     * (codificación UTF-8, al menos 32 bytes; si no, JJWT lanzará excepción)
+     * y el parser que se reutiliza en todas las verificaciones.
+     *
+     * @param secret Clave de al menos 32 caracteres (256 bits) en application.properties
+     * @param registry Registro de métricas
+     * @param maxEntradas Tokens verificados retenidos en memoria ({@code jwt.cache.max-entradas})
      */
-    @PostConstruct
-    private void init() {
-        // Crea la clave a partir del texto; si no son 32+ bytes, JJWT lanzará excepción
-        this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    public JwtService(@Value("${jwt.secret}") String secret,
+                      MeterRegistry registry,
+                      @Value("${jwt.cache.max-entradas:10000}") int maxEntradas) {
+        this.key         = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser      = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verificados = new LruCache<>(maxEntradas);
+        this.aciertos    = registry.counter("jwt.cache", "resultado", "acierto");
+        this.fallos      = registry.counter("jwt.cache", "resultado", "fallo");
     }
 
     /**
@@ -67,36 +89,41 @@ public class JwtService {
     }
 
     /**
-     * Verifica si un token es válido tanto en firma como en fecha de expiración.
+     * Verifica la firma y la expiración de un token y extrae el ID de usuario
+     * (campo `subject`) en un único parseo.
+     *
+     * Los tokens verificados se guardan en una caché LRU acotada, con el resumen
+     * SHA-256 del token como clave (no se retiene el token) y hasta su expiración:
+     * las peticiones siguientes con el mismo token no repiten el HMAC ni el parseo.
      *
-     * @param token Token JWT a validar
-     * @return true si el token es válido; false si es inválido o ha expirado
+     * @param token Token JWT a verificar
+     * @return ID del usuario, o vacío si el token es inválido o ha expirado
      */
-    public boolean isValid(String token) {
+    public Optional<String> verificar(String token) {
+        String clave = TextoUtils.resumenSha256(token);
+        long ahora = System.currentTimeMillis();
+
+        TokenVerificado enCache = verificados.get(clave);
+        if (enCache != null) {
+            if (ahora < enCache.expiraEn()) {
+                aciertos.increment();
+                return Optional.of(enCache.usuarioId());
+            }
+            verificados.remove(clave);
+            return Optional.empty();
+        }
+
+        fallos.increment();
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token);   // lanza excepción si está mal
-            return true;
-        } catch (JwtException e) {
+            Claims claims = parser.parseClaimsJws(token).getBody();   // lanza excepción si está mal
+            // Sólo se guardan tokens con caducidad, para no retenerlos indefinidamente
+            if (claims.getExpiration() != null) {
+                verificados.put(clave, new TokenVerificado(claims.getSubject(), claims.getExpiration().getTime()));
+            }
+            return Optional.ofNullable(claims.getSubject());
+        } catch (JwtException | IllegalArgumentException e) {
             log.warn("JWT inválido: {}", e.getMessage());
-            return false;
+            return Optional.empty();
         }
     }
-
-    /**
-     * Extrae el ID de usuario (campo `subject`) de un token ya validado.
-     *
-     * @param token Token JWT previamente validado
-     * @return ID del usuario autenticado
-     */
-    public String getUsuarioId(String token) {
-        return Jwts.parserBuilder()
-                   .setSigningKey(key)
-                   .build()
-                   .parseClaimsJws(token)
-                   .getBody()
-                   .getSubject();
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+/**
+ * Migración única del historial de días embebido en los usuarios
+ * ({@code usuarios.historialDeDias}) a la colección {@code dias}.
+ *
+ * Se ejecuta al arrancar, antes de que el servidor web acepte peticiones:
+ * {@link com.caloria.model.Usuario} ya no mapea el array, así que guardar
+ * un usuario sin migrar borraría su historial. Sólo procesa los usuarios que
+ * todavía tienen el array embebido, de uno en uno con un cursor. Por cada usuario:
+ * <ol>
+ *   <li>Inserta sus días en {@code dias} con una escritura masiva de
+ *       {@code upsert} por (usuarioId, fecha) y {@code $setOnInsert}</li>
+ *   <li>Elimina el array del usuario con {@code $unset}</li>
+ * </ol>
+ *
+ * Es idempotente: si se interrumpe, al reintentar no duplica días
+ * ni sobrescribe los que ya se hubieran registrado en la colección nueva.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MigracionHistorialService implements SmartInitializingSingleton {
+
+    private static final String CAMPO = "historialDeDias";
+
+    private final MongoTemplate mongoTemplate;
+
+    private boolean ejecutada;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrar();
+    }
+
+    /**
+     * Migra los usuarios pendientes. Sólo se ejecuta una vez por arranque, aunque
+     * se invoque también desde migraciones que dependen de ella
+     * ({@link MigracionResumenesService}).
+     */
+    public synchronized void migrar() {
+        if (ejecutada) {
+            return;
+        }
+        ejecutada = true;
+
+        Query pendientes = new Query(Criteria.where(CAMPO).exists(true));
+        pendientes.fields().include(CAMPO);
+
+        int usuarios = 0;
+        int dias = 0;
+        try (Stream<Document> cursor = mongoTemplate.stream(pendientes, Document.class, "usuarios")) {
+            Iterator<Document> it = cursor.iterator();
+            while (it.hasNext()) {
+                Document usuario = it.next();
+                String usuarioId = usuario.get("_id").toString();
+                dias += migrar(usuarioId, usuario.getList(CAMPO, Document.class, List.of()));
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(usuario.get("_id"))),
+                                          new Update().unset(CAMPO), "usuarios");
+                usuarios++;
+            }
+        }
+        if (usuarios > 0) {
+            log.info("Historial migrado a 'dias': {} usuarios, {} días", usuarios, dias);
+        }
+    }
+
+    /**
+     * Copia los días embebidos de un usuario a la colección {@code dias}.
+     * Los valores se copian tal cual, con el mismo formato con el que se guardaron.
+     *
+     * @param usuarioId ID del usuario
+     * @param historial Días embebidos
+     * @return Número de días procesados
+     */
+    private int migrar(String usuarioId, List<Document> historial) {
+        if (historial.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Dia.class);
+        for (Document dia : historial) {
+            Update update = new Update();
+            dia.forEach((campo, valor) -> {
+                if (!"fecha".equals(campo)) {
+                    update.setOnInsert(campo, valor);
+                }
+            });
+            bulk.upsert(new Query(Criteria.where("usuarioId").is(usuarioId).and("fecha").is(dia.get("fecha"))),
+                        update);
+        }
+        bulk.execute();
+        return historial.size();
+    }
+}
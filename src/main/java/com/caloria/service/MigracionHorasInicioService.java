@@ -0,0 +1,57 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.List;
+
+
+/**
+ * Migración que convierte {@code dias.horaInicioDia} al formato "HH:mm".
+ *
+ * Los días guardados con {@code horaInicioDia} como {@code LocalTime} tienen
+ * una fecha completa: la hora de inicio en la zona del servidor, el día en que
+ * se escribieron. Consultar por hora de inicio ({@link PrecreacionDiasService})
+ * nunca encontraría esos días en una fecha posterior.
+ *
+ * Se ejecuta al arrancar, después de la migración del historial (que copia las
+ * fechas tal cual), con una única actualización sobre los días cuyo campo sigue
+ * siendo una fecha: la hora se obtiene en la zona del servidor, la misma con la
+ * que se convirtió al guardarla. Es idempotente: al repetirla no quedan días
+ * que convertir.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MigracionHorasInicioService implements SmartInitializingSingleton {
+
+    private static final String CAMPO = "horaInicioDia";
+
+    private final MongoTemplate mongoTemplate;
+    private final MigracionHistorialService migracionHistorial;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Los días embebidos en los usuarios deben estar ya en 'dias'
+        migracionHistorial.migrar();
+
+        Document hora = new Document("$dateToString", new Document("format", "%H:%M")
+                .append("date", "$" + CAMPO)
+                .append("timezone", ZoneId.systemDefault().getId()));
+        UpdateResult resultado = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Dia.class))
+                .updateMany(Filters.type(CAMPO, BsonType.DATE_TIME),
+                            List.of(new Document("$set", new Document(CAMPO, hora))));
+        if (resultado.getModifiedCount() > 0) {
+            log.info("Hora de inicio convertida a HH:mm en {} días", resultado.getModifiedCount());
+        }
+    }
+}
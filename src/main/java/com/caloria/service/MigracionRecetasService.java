@@ -0,0 +1,75 @@
+package com.caloria.service;
+
+import com.caloria.model.Receta;
+import com.caloria.utils.TextoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+
+/**
+ * Migración única que rellena {@code tituloNormalizado} en las recetas
+ * del catálogo guardadas antes de existir el campo.
+ *
+ * Se ejecuta al arrancar y sólo procesa las recetas que no lo tienen, con una
+ * escritura masiva no ordenada. Si ya había varias recetas con el mismo título
+ * (variantes de mayúsculas), sólo una recibe el campo; el resto choca con el
+ * índice único y se queda sin él: siguen accesibles por ID desde los usuarios
+ * que las guardaron, pero el catálogo ya no las devuelve al buscar por título.
+ *
+ * Es idempotente: al reintentar sólo vuelve a intentar las recetas sin el campo.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MigracionRecetasService implements ApplicationRunner {
+
+    private static final String CAMPO = "tituloNormalizado";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query pendientes = new Query(Criteria.where(CAMPO).exists(false).and("titulo").ne(null));
+        pendientes.fields().include("titulo");
+
+        List<Document> recetas = mongoTemplate.find(pendientes, Document.class, "catalogoRecetas");
+        if (recetas.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Receta.class);
+        int total = 0;
+        for (Document receta : recetas) {
+            String clave = TextoUtils.normalizar(receta.getString("titulo"));
+            if (!clave.isEmpty()) {
+                bulk.updateOne(new Query(Criteria.where("_id").is(receta.get("_id"))),
+                               new Update().set(CAMPO, clave));
+                total++;
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+
+        try {
+            bulk.execute();
+            log.info("Título normalizado añadido a {} recetas del catálogo", total);
+        } catch (BulkOperationException e) {
+            int duplicadas = e.getErrors().size();
+            log.warn("Título normalizado añadido a {} recetas del catálogo; {} duplicadas se dejan sin él",
+                     total - duplicadas, duplicadas);
+        }
+    }
+}
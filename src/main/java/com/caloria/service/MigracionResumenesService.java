@@ -0,0 +1,113 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import com.caloria.model.TotalesDia;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+
+/**
+ * Migración única que genera los resúmenes por periodo ({@code resumenes}) y la
+ * ventana móvil ({@code ventanas}) a partir de los días ya registrados en {@code dias}.
+ *
+ * Los resúmenes sólo se actualizan con cada registro nuevo; sin esta migración,
+ * las estadísticas de la semana, del mes y de los últimos días ignorarían todo
+ * lo registrado antes de existir (incluido el historial migrado desde los usuarios,
+ * {@link MigracionHistorialService}).
+ *
+ * Se ejecuta al arrancar, después de la migración del historial y antes de que el
+ * servidor web acepte peticiones, recorriendo los días con un cursor ordenado por
+ * (usuarioId, fecha): cada usuario se escribe con {@link ResumenPeriodoService#fijarHistorial}.
+ * Los días sin consumo (p. ej. pre-creados) se omiten. Al terminar deja una marca
+ * en {@code migraciones} para no repetirse; si se interrumpe, al reintentar vuelve
+ * a fijar los mismos totales.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MigracionResumenesService implements SmartInitializingSingleton {
+
+    private static final String COLECCION = "migraciones";
+    private static final String MARCA = "resumenes-desde-dias";
+
+    private final MongoTemplate mongoTemplate;
+    private final ResumenPeriodoService resumenService;
+    private final MigracionHistorialService migracionHistorial;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Los días embebidos en los usuarios deben estar ya en 'dias'
+        migracionHistorial.migrar();
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(MARCA)), COLECCION)) {
+            return;
+        }
+
+        Query query = new Query().with(Sort.by("usuarioId", "fecha"));
+        query.fields().include("usuarioId", "fecha", "proteinasConsumidas", "carbohidratosConsumidos",
+                               "grasasConsumidas", "caloriasConsumidas", "aplicados");
+
+        int usuarios = 0;
+        int dias = 0;
+        String usuarioActual = null;
+        SortedMap<LocalDate, TotalesDia> pendientes = new TreeMap<>();
+        try (Stream<Dia> cursor = mongoTemplate.stream(query, Dia.class)) {
+            Iterator<Dia> it = cursor.iterator();
+            while (it.hasNext()) {
+                Dia dia = it.next();
+                if (!dia.getUsuarioId().equals(usuarioActual)) {
+                    if (!pendientes.isEmpty()) {
+                        resumenService.fijarHistorial(usuarioActual, pendientes);
+                        usuarios++;
+                    }
+                    usuarioActual = dia.getUsuarioId();
+                    pendientes = new TreeMap<>();
+                }
+                TotalesDia totales = totales(dia);
+                if (totales != null) {
+                    pendientes.put(dia.getFecha(), totales);
+                    dias++;
+                }
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            resumenService.fijarHistorial(usuarioActual, pendientes);
+            usuarios++;
+        }
+
+        mongoTemplate.save(new Document("_id", MARCA).append("completadaEn", new Date()), COLECCION);
+        log.info("Resúmenes generados desde 'dias': {} usuarios, {} días", usuarios, dias);
+    }
+
+    /**
+     * Totales de un día, o null si no tiene consumo registrado.
+     */
+    private static TotalesDia totales(Dia dia) {
+        TotalesDia t = new TotalesDia();
+        t.setProteinasG(valor(dia.getProteinasConsumidas()));
+        t.setCarbohidratosG(valor(dia.getCarbohidratosConsumidos()));
+        t.setGrasasG(valor(dia.getGrasasConsumidas()));
+        t.setCalorias(valor(dia.getCaloriasConsumidas()));
+        t.setEventos(dia.getAplicados());
+        boolean vacio = t.getProteinasG() == 0 && t.getCarbohidratosG() == 0
+                        && t.getGrasasG() == 0 && t.getCalorias() == 0;
+        return vacio ? null : t;
+    }
+
+    private static double valor(Double d) {
+        return d != null ? d : 0;
+    }
+}
@@ -10,9 +10,7 @@ import com.caloria.model.Usuario;
 import com.caloria.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.server.ResponseStatusException;
 
-import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 
 
@@ -23,6 +21,8 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
  * y calcular automáticamente las metas calóricas y macronutrientes cuando se selecciona un objetivo nutricional.
  *
  * Colabora estrechamente con el {@link MetabolismoService} para realizar los cálculos personalizados.
+ * Los usuarios se leen a través de {@link UsuarioContexto}: una sola lectura por petición
+ * aunque varios pasos del flujo trabajen sobre el mismo usuario.
  */
 @Slf4j
 @Service
@@ -31,6 +31,7 @@ public class PerfilService {
 
     private final UsuarioRepository usuarioRepo;
     private final MetabolismoService metabolismo;
+    private final UsuarioContexto contexto;
 
 
     /**
@@ -41,8 +42,7 @@ public class PerfilService {
      * @return Usuario actualizado (no guardado si no recalcula)
      */
     public Usuario recalcularMetas(String usuarioId) {
-        Usuario u = usuarioRepo.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        Usuario u = contexto.obtener(usuarioId);
         if (u.getNivelActividad() != null && u.getObjetivo() != null) {
             completarObjetivo(usuarioId, u.getNivelActividad(), u.getObjetivo());
         }
@@ -53,34 +53,31 @@ public class PerfilService {
      * Marca como completado el paso de datos básicos y revisa si el perfil está completo.
      */
     public Usuario marcarBasicosCompletos(String usuarioId) {
-        Usuario u = usuarioRepo.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        Usuario u = contexto.obtener(usuarioId);
         u.setBasicosCompletos(true);
         revisarPerfilCompleto(u);
-        return usuarioRepo.save(u);
+        return guardar(u);
     }
 
     /**
      * Marca como completado el paso de actividad física y revisa si el perfil está completo.
      */
     public Usuario marcarActividadCompleta(String usuarioId) {
-        Usuario u = usuarioRepo.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        Usuario u = contexto.obtener(usuarioId);
         u.setActividadCompleta(true);
         revisarPerfilCompleto(u);
-        return usuarioRepo.save(u);
+        return guardar(u);
     }
 
     /**
      * Marca como completado el paso de objetivo nutricional y revisa si el perfil está completo.
      */
     public Usuario marcarObjetivoCompleto(String usuarioId) {
-        Usuario u = usuarioRepo.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        Usuario u = contexto.obtener(usuarioId);
         u.setObjetivoCompleto(true);
         log.debug(">> completarObjetivo: antes de marcar, objetivoCompleto = {}", u.isObjetivoCompleto());
         revisarPerfilCompleto(u);
-        return usuarioRepo.save(u);
+        return guardar(u);
     }
     
     
@@ -93,8 +90,7 @@ public class PerfilService {
      * @return Usuario actualizado
      */
     public Usuario marcarPreferenciasCompleto(String usuarioId, PreferenciasDTO dto) {
-        Usuario u = usuarioRepo.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        Usuario u = contexto.obtener(usuarioId);
 
         log.debug(">>> marcarPreferenciasCompleto IN: preferencias={} alergias={} antes perfilCompleto={}",
                   dto.getPreferencias(), dto.getAlergias(), u.isPerfilCompleto());
@@ -104,7 +100,7 @@ public class PerfilService {
         u.setPreferenciasCompletas(true);
 
         revisarPerfilCompleto(u);
-        Usuario saved = usuarioRepo.save(u);
+        Usuario saved = guardar(u);
 
         log.debug(">>> marcarPreferenciasCompleto OUT: preferenciasCompletas={} perfilCompleto={} tras save",
                   saved.isPreferenciasCompletas(), saved.isPerfilCompleto());
@@ -123,8 +119,7 @@ public class PerfilService {
      * @return Usuario actualizado con metas aplicadas
      */
     public Usuario completarObjetivo(String usuarioId, String nivelActStr, String objetivoStr) {
-        Usuario u = usuarioRepo.findById(usuarioId)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        Usuario u = contexto.obtener(usuarioId);
 
         // 1️⃣ Calcula BMR → TDEE → Calorías objetivo → Macros
         double bmr = metabolismo.calcularBmr(u.getPesoKg(), u.getAlturaCm(), u.getEdad(), u.getSexo());
@@ -143,10 +138,19 @@ public class PerfilService {
         revisarPerfilCompleto(u);
 
         // 3️⃣ Guarda el estado final completo
-        return usuarioRepo.save(u);
+        return guardar(u);
       }
     
     
+    /**
+     * Guarda el usuario y actualiza la instantánea de la petición.
+     */
+    private Usuario guardar(Usuario u) {
+        Usuario guardado = usuarioRepo.save(u);
+        contexto.actualizar(guardado);
+        return guardado;
+    }
+
     /**
      * Verifica si el perfil del usuario está completamente configurado.
      * Esto ocurre cuando se han completado los pasos de:
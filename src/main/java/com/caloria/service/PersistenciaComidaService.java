@@ -0,0 +1,271 @@
+package com.caloria.service;
+
+import com.caloria.model.Alimento;
+import com.caloria.model.CatalogoAlimento;
+import com.caloria.model.RegistroComida;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+
+/**
+ * Etapa de persistencia de las comidas analizadas por {@link IAService}.
+ *
+ * Tras responder al usuario, el análisis deja aquí el trabajo pendiente
+ * (alias aprendidos, alimentos nuevos del catálogo, evento de la comida y macros del día),
+ * que procesan {@code persistencia.workers} hilos de {@code tareasExecutor}.
+ *
+ * <ul>
+ *   <li>Cola acotada ({@code persistencia.cola.capacidad}): si está llena, quien
+ *       encola espera hasta {@code persistencia.cola.espera-ms} y, si sigue llena,
+ *       persiste él mismo. Nunca se descarta trabajo.</li>
+ *   <li>Cada paso se reintenta ante errores de MongoDB con espera exponencial,
+ *       hasta {@code persistencia.reintentos} veces.</li>
+ *   <li>Al apagar la aplicación se deja de aceptar trabajo nuevo en la cola
+ *       y se vacía la pendiente antes de parar los hilos.</li>
+ * </ul>
+ *
+ * Métricas: {@code persistencia.cola.tamano} (gauge), {@code persistencia.retraso}
+ * (tiempo desde que se encola hasta que se persiste), {@code persistencia.reintentos}
+ * y {@code persistencia.fallos}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PersistenciaComidaService {
+
+    private final CatalogoAlimentoService catalogoService;
+    private final DiaService diaService;
+    private final ResumenPeriodoService resumenService;
+    private final MeterRegistry registry;
+
+    @Qualifier("tareasExecutor")
+    private final Executor tareasExecutor;
+
+    @Value("${persistencia.cola.capacidad:1000}")
+    private int capacidad;
+
+    @Value("${persistencia.cola.espera-ms:2000}")
+    private long esperaEncolarMs;
+
+    @Value("${persistencia.workers:2}")
+    private int workers;
+
+    @Value("${persistencia.reintentos:5}")
+    private int maxReintentos;
+
+    @Value("${persistencia.reintento.espera-inicial-ms:200}")
+    private long esperaReintentoMs;
+
+    @Value("${persistencia.drenado-segundos:30}")
+    private long segundosDrenado;
+
+    private BlockingQueue<Trabajo> cola;
+    private CountDownLatch terminados;
+    private volatile boolean activo;
+
+    private Timer retraso;
+    private Counter reintentos;
+    private Counter fallos;
+
+    /**
+     * Trabajo de persistencia de una comida analizada.
+     *
+     * @param usuarioId Usuario al que se imputan los macros
+     * @param aliasNuevos Alias aprendidos: nombre del usuario → nombre del catálogo
+     * @param nuevosEnCatalogo Alimentos a insertar en el catálogo si no existen
+     * @param consumidos Porciones consumidas a sumar al día
+     * @param textoOriginal Comida tal como la envió el usuario
+     * @param procesadoPorIA Si algún alimento se resolvió con la IA
+     * @param analizadoEn Momento del análisis; determina el día nutricional
+     * @param encoladoEn Marca de {@link System#nanoTime()} al encolar
+     */
+    public record Trabajo(String usuarioId,
+                          Map<String, String> aliasNuevos,
+                          List<CatalogoAlimento> nuevosEnCatalogo,
+                          List<Alimento> consumidos,
+                          String textoOriginal,
+                          boolean procesadoPorIA,
+                          LocalDateTime analizadoEn,
+                          long encoladoEn) {
+
+        public Trabajo(String usuarioId, Map<String, String> aliasNuevos,
+                       List<CatalogoAlimento> nuevosEnCatalogo, List<Alimento> consumidos,
+                       String textoOriginal, boolean procesadoPorIA) {
+            this(usuarioId, aliasNuevos, nuevosEnCatalogo, consumidos,
+                 textoOriginal, procesadoPorIA, LocalDateTime.now(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Crea la cola, registra las métricas y arranca los hilos consumidores.
+     */
+    @PostConstruct
+    void iniciar() {
+        cola       = new ArrayBlockingQueue<>(capacidad);
+        retraso    = Timer.builder("persistencia.retraso").register(registry);
+        reintentos = registry.counter("persistencia.reintentos");
+        fallos     = registry.counter("persistencia.fallos");
+        registry.gauge("persistencia.cola.tamano", cola, BlockingQueue::size);
+
+        activo = true;
+        terminados = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            tareasExecutor.execute(this::consumir);
+        }
+        log.info("Persistencia de comidas iniciada ({} hilos, cola de {})", workers, capacidad);
+    }
+
+    /**
+     * Encola el trabajo de una comida. Si la cola sigue llena tras la espera
+     * configurada, o la aplicación se está apagando, se persiste en el hilo actual.
+     *
+     * @param trabajo Trabajo a persistir
+     * @throws InterruptedException si se interrumpe la espera por hueco en la cola
+     */
+    public void encolar(Trabajo trabajo) throws InterruptedException {
+        if (activo && cola.offer(trabajo, esperaEncolarMs, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        log.warn("Cola de persistencia llena o detenida, se persiste en el hilo de la petición");
+        procesar(trabajo);
+    }
+
+    /**
+     * Deja de aceptar trabajo y espera a que los hilos consumidores vacíen
+     * la cola, como mucho {@code persistencia.drenado-segundos}.
+     */
+    @PreDestroy
+    void detener() throws InterruptedException {
+        activo = false;
+        if (terminados.await(segundosDrenado, TimeUnit.SECONDS)) {
+            log.info("Cola de persistencia vaciada");
+        } else {
+            log.error("Apagado con {} comidas sin persistir", cola.size());
+        }
+    }
+
+    /**
+     * Bucle de cada hilo consumidor: procesa trabajos mientras la etapa
+     * esté activa o queden trabajos en la cola.
+     */
+    private void consumir() {
+        try {
+            while (activo || !cola.isEmpty()) {
+                Trabajo trabajo = cola.poll(500, TimeUnit.MILLISECONDS);
+                if (trabajo != null) {
+                    procesar(trabajo);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            terminados.countDown();
+        }
+    }
+
+    /**
+     * Persiste un trabajo paso a paso. Cada paso se reintenta por separado
+     * para no repetir incrementos ya aplicados.
+     *
+     * Los alimentos nuevos del catálogo van en una sola escritura masiva.
+     * La comida se añade como evento a {@code comidas} y después se suman sus
+     * totales al día y a los resúmenes por periodo. Ambos pasos son idempotentes por
+     * ID de evento, así que se pueden reintentar; si aun así fallasen, el día y sus
+     * resúmenes pueden recalcularse a partir de los eventos ({@link ReconstruccionDiasService}).
+     */
+    private void procesar(Trabajo trabajo) {
+        try {
+            trabajo.aliasNuevos().forEach((usuario, catalogo) ->
+                    conReintentos(() -> catalogoService.registrarAlias(usuario, catalogo)));
+            if (!trabajo.nuevosEnCatalogo().isEmpty()) {
+                conReintentos(() -> catalogoService.guardarSiNoExistenLote(trabajo.nuevosEnCatalogo()));
+            }
+            if (!trabajo.consumidos().isEmpty()) {
+                RegistroComida registro = conReintentos(() -> diaService.crearRegistro(
+                        trabajo.usuarioId(), trabajo.consumidos(), trabajo.textoOriginal(),
+                        trabajo.procesadoPorIA(), trabajo.analizadoEn()));
+                conReintentos(() -> diaService.guardarRegistro(registro));
+                // Si el día ya incluía la comida (p. ej. una reconstrucción), sus resúmenes
+                // también; salvo que un intento anterior fallase sin saber si se aplicó
+                AtomicBoolean dudoso = new AtomicBoolean();
+                boolean aplicado = conReintentos(() -> {
+                    try {
+                        return diaService.aplicarRegistro(registro);
+                    } catch (DataAccessException e) {
+                        dudoso.set(true);
+                        throw e;
+                    }
+                });
+                if (aplicado || dudoso.get()) {
+                    conReintentos(() -> resumenService.registrar(registro));
+                }
+            }
+            log.info("Persistencia completada ({} items)", trabajo.consumidos().size());
+        } catch (RuntimeException e) {
+            fallos.increment();
+            log.error("No se pudo persistir la comida del usuario {}", trabajo.usuarioId(), e);
+        } finally {
+            retraso.record(System.nanoTime() - trabajo.encoladoEn(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Ejecuta un paso sin resultado con reintentos (ver {@link #conReintentos(Supplier)}).
+     */
+    private void conReintentos(Runnable paso) {
+        conReintentos(() -> {
+            paso.run();
+            return null;
+        });
+    }
+
+    /**
+     * Ejecuta un paso reintentando ante {@link DataAccessException} con espera
+     * exponencial (se duplica en cada intento, hasta 5 s).
+     *
+     * @param paso Paso a ejecutar
+     * @return Resultado del paso
+     */
+    private <T> T conReintentos(Supplier<T> paso) {
+        long espera = esperaReintentoMs;
+        for (int intento = 1; ; intento++) {
+            try {
+                return paso.get();
+            } catch (DataAccessException e) {
+                if (intento > maxReintentos) {
+                    throw e;
+                }
+                reintentos.increment();
+                log.warn("Error de MongoDB al persistir (intento {}), reintento en {} ms: {}",
+                         intento, espera, e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(espera);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                espera = Math.min(espera * 2, 5000);
+            }
+        }
+    }
+}
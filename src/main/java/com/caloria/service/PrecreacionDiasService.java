@@ -0,0 +1,122 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+
+/**
+ * Crea por adelantado el día siguiente de los usuarios activos justo antes
+ * de su cambio de jornada ({@code horaInicioDia}).
+ *
+ * Muchos usuarios comparten la misma hora de inicio (p. ej. 04:00); sin esto,
+ * la primera petición de cada uno tras el cambio crea su día y todas esas
+ * inserciones coinciden con el inicio del tráfico de la mañana.
+ *
+ * Cada ejecución ({@code dias.precreacion.cron}) busca las horas de inicio que
+ * caen en los próximos {@code dias.precreacion.antelacion-minutos} minutos y,
+ * por cada una, crea con escrituras masivas el día siguiente de los usuarios
+ * que tienen día en la jornada que termina (índice fecha + horaInicioDia).
+ * Los usuarios inactivos no generan días vacíos.
+ *
+ * Las escrituras son {@code upsert} con {@code $setOnInsert}: repetir una
+ * ejecución, o ejecutarla en varias instancias, no modifica días existentes.
+ *
+ * Métrica {@code dias.creados} con la etiqueta {@code modo}: {@code anticipado}
+ * (aquí) o {@code bajo-demanda} (primer registro del día, en {@link DiaService}).
+ */
+@Slf4j
+@Service
+public class PrecreacionDiasService {
+
+    /** Días por escritura masiva */
+    private static final int TAMANO_LOTE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final Counter creados;
+
+    @Value("${dias.precreacion.antelacion-minutos:5}")
+    private int antelacionMinutos;
+
+    public PrecreacionDiasService(MongoTemplate mongoTemplate, MeterRegistry registry) {
+        this.mongoTemplate = mongoTemplate;
+        this.creados       = registry.counter("dias.creados", "modo", "anticipado");
+    }
+
+    /**
+     * Pre-crea los días de las horas de inicio comprendidas en
+     * (ahora, ahora + antelación]. Con la antelación igual al intervalo del cron,
+     * cada hora de inicio se procesa una sola vez.
+     */
+    @Scheduled(cron = "${dias.precreacion.cron:0 */5 * * * *}")
+    public void precrearProximosDias() {
+        LocalDateTime ahora = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        for (int m = 1; m <= antelacionMinutos; m++) {
+            LocalDateTime cambio = ahora.plusMinutes(m);
+            precrear(cambio.toLocalTime(), cambio.toLocalDate());
+        }
+    }
+
+    /**
+     * Crea el día {@code fecha} de los usuarios con hora de inicio {@code inicio}
+     * que tienen día en la jornada anterior.
+     *
+     * @param inicio Hora de inicio del día
+     * @param fecha Fecha de la jornada que empieza a esa hora
+     * @return Número de días creados
+     */
+    int precrear(LocalTime inicio, LocalDate fecha) {
+        Query activos = new Query(Criteria.where("fecha").is(fecha.minusDays(1)).and("horaInicioDia").is(inicio.toString()));
+        activos.fields().include("usuarioId");
+
+        int total = 0;
+        try (Stream<Dia> dias = mongoTemplate.stream(activos, Dia.class)) {
+            Iterator<Dia> it = dias.iterator();
+            while (it.hasNext()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Dia.class);
+                int enLote = 0;
+                while (it.hasNext() && enLote < TAMANO_LOTE) {
+                    bulk.upsert(new Query(Criteria.where("usuarioId").is(it.next().getUsuarioId()).and("fecha").is(fecha)),
+                                diaVacio(inicio));
+                    enLote++;
+                }
+                int insertados = bulk.execute().getUpserts().size();
+                creados.increment(insertados);
+                total += insertados;
+            }
+        }
+        if (total > 0) {
+            log.info("Días {} pre-creados para el inicio de las {}: {}", fecha, inicio, total);
+        }
+        return total;
+    }
+
+    /**
+     * Día completo a cero, como lo crearía {@link Dia}: sólo se escribe si el día
+     * no existe ({@code $setOnInsert}), así que nunca pisa un día ya registrado.
+     */
+    private static Update diaVacio(LocalTime inicio) {
+        return new Update().setOnInsert("horaInicioDia", inicio.toString())
+                           .setOnInsert("proteinasConsumidas", 0.0)
+                           .setOnInsert("carbohidratosConsumidos", 0.0)
+                           .setOnInsert("grasasConsumidas", 0.0)
+                           .setOnInsert("caloriasConsumidas", 0.0)
+                           .setOnInsert("consejosGenerados", 0);
+    }
+}
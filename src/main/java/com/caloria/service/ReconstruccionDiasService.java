@@ -0,0 +1,214 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import com.caloria.model.RegistroComida;
+import com.caloria.model.TotalesDia;
+import com.caloria.model.Usuario;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Recalcula los totales de los días de un usuario a partir del registro
+ * de eventos {@code comidas} ({@link RegistroComida}).
+ *
+ * Los totales de {@link Dia} son una vista materializada de esos eventos:
+ * si una actualización se perdió o se aplicó dos veces, este proceso los
+ * deja de nuevo consistentes sin tocar el resto de campos del día
+ * (p. ej. {@code consejosGenerados}), junto con los resúmenes por periodo
+ * ({@link ResumenPeriodoService}).
+ *
+ * Convive con la persistencia asíncrona de comidas ({@link PersistenciaComidaService}):
+ * <ul>
+ *   <li>MongoDB agrega las comidas por día ({@code $group}); cada fila trae los
+ *       totales y los IDs de los eventos contados, sin cargar el registro en memoria.</li>
+ *   <li>Cada día se escribe junto con esos IDs ({@code aplicados}), de modo que un
+ *       evento contado aquí y todavía pendiente de aplicar no se suma dos veces
+ *       ({@link DiaService#aplicarRegistro(RegistroComida)}).</li>
+ *   <li>La escritura sólo se hace si el día no tiene aplicado ningún evento fuera de
+ *       la agregación; si se aplicó uno entre la lectura y la escritura, ese día se
+ *       vuelve a agregar (hasta {@value #MAX_INTENTOS} veces) en lugar de perder el incremento.</li>
+ * </ul>
+ *
+ * Los días se escriben con una escritura masiva no ordenada y sus resúmenes se
+ * fijan en paralelo en un {@link ForkJoinPool} propio ({@code dias.reconstruccion.paralelismo}).
+ *
+ * Los días registrados antes de que existiera el registro de eventos no tienen
+ * comidas asociadas; por eso se puede limitar la reconstrucción a partir de una fecha.
+ */
+@Slf4j
+@Service
+public class ReconstruccionDiasService {
+
+    /** Intentos por día cuando otra escritura lo modifica durante la reconstrucción */
+    private static final int MAX_INTENTOS = 3;
+
+    /** Código de MongoDB para clave duplicada */
+    private static final int CLAVE_DUPLICADA = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ResumenPeriodoService resumenService;
+    private final ForkJoinPool pool;
+
+    public ReconstruccionDiasService(MongoTemplate mongoTemplate,
+                                     ResumenPeriodoService resumenService,
+                                     @Value("${dias.reconstruccion.paralelismo:4}") int paralelismo) {
+        this.mongoTemplate  = mongoTemplate;
+        this.resumenService = resumenService;
+        this.pool           = new ForkJoinPool(paralelismo);
+    }
+
+    /**
+     * Recalcula los totales de los días del usuario que tienen comidas registradas.
+     *
+     * @param usuarioId ID del usuario
+     * @param desde Primer día a recalcular (inclusive), o null para todos
+     * @return Número de días recalculados
+     * @throws InterruptedException si se interrumpe la actualización de los resúmenes
+     */
+    public int reconstruir(String usuarioId, LocalDate desde) throws InterruptedException {
+        Criteria criterio = Criteria.where("usuarioId").is(usuarioId);
+        if (desde != null) {
+            // Fechas ISO (yyyy-MM-dd): el orden de texto coincide con el cronológico
+            criterio = criterio.and("fechaDiaNutricional").gte(desde.toString());
+        }
+
+        List<Document> reconstruidos = new ArrayList<>();
+        List<Document> filas = agregar(criterio);
+        for (int intento = 1; !filas.isEmpty(); intento++) {
+            Set<String> conflictos = escribir(usuarioId, filas, reconstruidos);
+            if (conflictos.isEmpty()) {
+                break;
+            }
+            if (intento == MAX_INTENTOS) {
+                log.warn("Días de {} sin reconstruir por escrituras concurrentes: {}", usuarioId, conflictos);
+                break;
+            }
+            filas = agregar(Criteria.where("usuarioId").is(usuarioId).and("fechaDiaNutricional").in(conflictos));
+        }
+
+        // Los resúmenes por periodo y la ventana móvil toman los totales recalculados
+        try {
+            pool.submit(() -> reconstruidos.parallelStream().forEach(fila ->
+                    resumenService.fijar(usuarioId, LocalDate.parse(fila.getString("_id")), comoTotalesDia(fila))))
+                .get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló la actualización de los resúmenes", e.getCause());
+        }
+
+        log.info("Días reconstruidos para {}: {}", usuarioId, reconstruidos.size());
+        return reconstruidos.size();
+    }
+
+    @PreDestroy
+    void detener() {
+        pool.shutdown();
+    }
+
+    /**
+     * Agrega en MongoDB las comidas que cumplen el criterio, una fila por día nutricional:
+     * {@code _id} (fecha), totales, hora de inicio y los IDs de los eventos ({@code eventos}).
+     */
+    private List<Document> agregar(Criteria criterio) {
+        Aggregation agregacion = Aggregation.newAggregation(
+                Aggregation.match(criterio),
+                Aggregation.group("fechaDiaNutricional")
+                        .sum("totales.proteinasG").as("proteinas")
+                        .sum("totales.carbohidratosG").as("carbohidratos")
+                        .sum("totales.grasasG").as("grasas")
+                        .sum("caloriasTotales").as("calorias")
+                        .first("horaInicioDia").as("horaInicioDia")
+                        .push("_id").as("eventos"));
+        return mongoTemplate.aggregate(agregacion, RegistroComida.class, Document.class).getMappedResults();
+    }
+
+    /**
+     * Fija los totales de los días agregados con una escritura masiva no ordenada.
+     *
+     * Cada día sólo se sobrescribe si no tiene aplicado ningún evento fuera de los
+     * agregados; si lo tiene, el {@code upsert} choca con el índice único
+     * (usuarioId, fecha) y el día se devuelve como conflicto.
+     *
+     * @param usuarioId ID del usuario
+     * @param filas Filas de {@link #agregar(Criteria)}
+     * @param reconstruidos Lista a la que se añaden las filas escritas
+     * @return Fechas (yyyy-MM-dd) de los días en conflicto
+     */
+    private Set<String> escribir(String usuarioId, List<Document> filas, List<Document> reconstruidos) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Dia.class);
+        for (Document fila : filas) {
+            List<String> eventos = eventos(fila);
+            String hora = fila.getString("horaInicioDia");
+            Update update = new Update().set("proteinasConsumidas", numero(fila, "proteinas"))
+                                        .set("carbohidratosConsumidos", numero(fila, "carbohidratos"))
+                                        .set("grasasConsumidas", numero(fila, "grasas"))
+                                        .set("caloriasConsumidas", numero(fila, "calorias"))
+                                        .set("aplicados", eventos);
+            if (hora != null) {
+                update.setOnInsert("horaInicioDia", Usuario.parsearHoraInicio(hora).toString());
+            }
+            bulk.upsert(new Query(Criteria.where("usuarioId").is(usuarioId)
+                                          .and("fecha").is(LocalDate.parse(fila.getString("_id")))
+                                          .and("aplicados").not().elemMatch(new Criteria().nin(eventos))),
+                        update);
+        }
+
+        Set<String> conflictos = new TreeSet<>();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            e.getErrors().forEach(error -> {
+                if (error.getCode() != CLAVE_DUPLICADA) {
+                    throw e;
+                }
+                conflictos.add(filas.get(error.getIndex()).getString("_id"));
+            });
+        }
+        for (Document fila : filas) {
+            if (!conflictos.contains(fila.getString("_id"))) {
+                reconstruidos.add(fila);
+            }
+        }
+        return conflictos;
+    }
+
+    /** Totales de una fila agregada */
+    private static TotalesDia comoTotalesDia(Document fila) {
+        TotalesDia t = new TotalesDia();
+        t.setProteinasG(numero(fila, "proteinas"));
+        t.setCarbohidratosG(numero(fila, "carbohidratos"));
+        t.setGrasasG(numero(fila, "grasas"));
+        t.setCalorias(numero(fila, "calorias"));
+        t.setEventos(eventos(fila));
+        return t;
+    }
+
+    /** IDs (hex) de las comidas de una fila agregada */
+    private static List<String> eventos(Document fila) {
+        return fila.getList("eventos", Object.class).stream().map(Object::toString).toList();
+    }
+
+    /** Lee un campo numérico de una fila agregada, o 0 si no está */
+    private static double numero(Document fila, String campo) {
+        Object valor = fila.get(campo);
+        return valor instanceof Number n ? n.doubleValue() : 0;
+    }
+}
@@ -0,0 +1,452 @@
+package com.caloria.service;
+
+import com.caloria.dto.ResumenPeriodoDTO;
+import com.caloria.model.Macros;
+import com.caloria.model.RegistroComida;
+import com.caloria.model.ResumenPeriodo;
+import com.caloria.model.TotalesDia;
+import com.caloria.model.Usuario;
+import com.caloria.model.VentanaNutricional;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+
+/**
+ * Servicio de estadísticas semanales, mensuales y de los últimos días.
+ *
+ * Las estadísticas se leen de documentos pre-agregados que se actualizan
+ * en cada registro de consumo, nunca recorriendo el historial:
+ * <ul>
+ *   <li>{@link ResumenPeriodo} de la semana y del mes del día (colección {@code resumenes}).</li>
+ *   <li>{@link VentanaNutricional} con los últimos 30 días (colección {@code ventanas}).</li>
+ * </ul>
+ *
+ * Cada registro cuesta dos escrituras, independientemente del historial del usuario:
+ * una masiva con los dos periodos y otra sobre una ranura de la ventana.
+ * Los días registrados antes de existir los resúmenes se incorporan una única
+ * vez al arrancar ({@link MigracionResumenesService}).
+ */
+@Service
+@RequiredArgsConstructor
+public class ResumenPeriodoService {
+
+    /** Código de MongoDB para clave duplicada */
+    private static final int CLAVE_DUPLICADA = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${resumen.adherencia.tolerancia:0.1}")
+    private double tolerancia;
+
+    /**
+     * Suma una comida del registro de eventos a los resúmenes de su día nutricional.
+     *
+     * Es idempotente: cada día de un resumen guarda los IDs de las comidas ya sumadas
+     * ({@code eventos}) y sólo se incrementa si la comida no está entre ellos. Repetir
+     * la escritura tras un error ambiguo no la suma dos veces.
+     *
+     * @param registro Evento de comida ya guardado
+     */
+    public void registrar(RegistroComida registro) {
+        TotalesDia consumo = new TotalesDia();
+        consumo.setProteinasG(registro.getTotales().getProteinasG());
+        consumo.setCarbohidratosG(registro.getTotales().getCarbohidratosG());
+        consumo.setGrasasG(registro.getTotales().getGrasasG());
+        consumo.setCalorias(registro.getCaloriasTotales());
+        LocalDate fecha = LocalDate.parse(registro.getFechaDiaNutricional());
+        actualizarPeriodos(registro.getUsuarioId(), fecha, consumo, registro.getId());
+        actualizarVentana(registro.getUsuarioId(), fecha, consumo, registro.getId());
+    }
+
+    /**
+     * Sustituye los totales de un día en los resúmenes, p. ej. tras recalcular
+     * el día a partir de sus comidas.
+     *
+     * @param usuarioId ID del usuario
+     * @param fecha Día nutricional
+     * @param totales Totales definitivos del día, con los IDs de las comidas que incluyen
+     */
+    public void fijar(String usuarioId, LocalDate fecha, TotalesDia totales) {
+        actualizarPeriodos(usuarioId, fecha, totales, null);
+        actualizarVentana(usuarioId, fecha, totales, null);
+    }
+
+    /**
+     * Sustituye los totales de varios días de un usuario en los resúmenes, p. ej. al
+     * generarlos a partir de los días ya registrados. Todos los periodos se escriben
+     * en una sola escritura masiva; en la ventana móvil sólo se fijan los días que
+     * caben en ella contando desde el más reciente.
+     *
+     * @param usuarioId ID del usuario
+     * @param dias Totales definitivos por día nutricional
+     */
+    public void fijarHistorial(String usuarioId, SortedMap<LocalDate, TotalesDia> dias) {
+        if (dias.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ResumenPeriodo.class);
+        dias.forEach((fecha, t) -> {
+            LocalDate lunes = fecha.with(DayOfWeek.MONDAY);
+            YearMonth mes = YearMonth.from(fecha);
+            String prefijo = "dias." + fecha + ".";
+            bulk.upsert(new Query(Criteria.where("_id").is(idSemana(usuarioId, lunes))),
+                        actualizacion(prefijo, t, null, usuarioId, "semana", lunes));
+            bulk.upsert(new Query(Criteria.where("_id").is(idMes(usuarioId, mes))),
+                        actualizacion(prefijo, t, null, usuarioId, "mes", mes.atDay(1)));
+        });
+        bulk.execute();
+
+        LocalDate desde = dias.lastKey().minusDays(VentanaNutricional.DIAS - 1L);
+        dias.tailMap(desde).forEach((fecha, t) -> actualizarVentana(usuarioId, fecha, t, null));
+    }
+
+    /**
+     * Estadísticas de la semana (lunes a domingo) que contiene la fecha indicada.
+     *
+     * @param usuarioId ID del usuario
+     * @param fecha Cualquier día de la semana, o null para la semana actual
+     * @return Estadísticas de la semana
+     */
+    public ResumenPeriodoDTO getResumenSemana(String usuarioId, LocalDate fecha) {
+        Document usuario = leerUsuario(usuarioId);
+        LocalDate dia = fecha != null ? fecha : hoy(usuario);
+        LocalDate lunes = dia.with(DayOfWeek.MONDAY);
+        return resumirPeriodo(usuarioId, usuario, "semana", idSemana(usuarioId, lunes), lunes, lunes.plusDays(6));
+    }
+
+    /**
+     * Estadísticas de un mes natural.
+     *
+     * @param usuarioId ID del usuario
+     * @param mes Mes a consultar, o null para el mes actual
+     * @return Estadísticas del mes
+     */
+    public ResumenPeriodoDTO getResumenMes(String usuarioId, YearMonth mes) {
+        Document usuario = leerUsuario(usuarioId);
+        YearMonth m = mes != null ? mes : YearMonth.from(hoy(usuario));
+        return resumirPeriodo(usuarioId, usuario, "mes", idMes(usuarioId, m), m.atDay(1), m.atEndOfMonth());
+    }
+
+    /**
+     * Estadísticas de los últimos días hasta hoy (incluido), leídas de la ventana móvil.
+     *
+     * @param usuarioId ID del usuario
+     * @param dias Número de días, entre 1 y {@link VentanaNutricional#DIAS}
+     * @return Estadísticas de los últimos días
+     * @throws ResponseStatusException 400 si el número de días está fuera de rango
+     */
+    public ResumenPeriodoDTO getResumenUltimos(String usuarioId, int dias) {
+        if (dias < 1 || dias > VentanaNutricional.DIAS) {
+            throw new ResponseStatusException(BAD_REQUEST,
+                    "El número de días debe estar entre 1 y " + VentanaNutricional.DIAS);
+        }
+        Document usuario = leerUsuario(usuarioId);
+        LocalDate hasta = hoy(usuario);
+        LocalDate desde = hasta.minusDays(dias - 1L);
+
+        Map<String, TotalesDia> porFecha = ventana(usuarioId);
+        ResumenPeriodoDTO dto = resumir("ultimos", usuario, desde, hasta, porFecha);
+        dto.setRachaActual(rachaActual(porFecha, usuario));
+        return dto;
+    }
+
+    /**
+     * Aplica el consumo de un día a su semana y su mes en una sola escritura masiva.
+     *
+     * Con evento, el filtro excluye los periodos que ya lo incluyen: si el periodo existe
+     * y ya lo tiene, o si otro registro lo acaba de crear, el {@code upsert} choca con el
+     * {@code _id} y se reintenta sin crear el documento (no modifica nada si ya estaba).
+     *
+     * @param evento ID de la comida a sumar, o null para sustituir los totales del día
+     */
+    private void actualizarPeriodos(String usuarioId, LocalDate fecha, TotalesDia t, String evento) {
+        LocalDate lunes = fecha.with(DayOfWeek.MONDAY);
+        YearMonth mes = YearMonth.from(fecha);
+        String prefijo = "dias." + fecha + ".";
+
+        List<Query> consultas = List.of(consultaPeriodo(idSemana(usuarioId, lunes), prefijo, evento),
+                                        consultaPeriodo(idMes(usuarioId, mes), prefijo, evento));
+        List<Update> updates = List.of(actualizacion(prefijo, t, evento, usuarioId, "semana", lunes),
+                                       actualizacion(prefijo, t, evento, usuarioId, "mes", mes.atDay(1)));
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ResumenPeriodo.class);
+        for (int i = 0; i < consultas.size(); i++) {
+            bulk.upsert(consultas.get(i), updates.get(i));
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != CLAVE_DUPLICADA) {
+                    throw e;
+                }
+                mongoTemplate.updateFirst(consultas.get(error.getIndex()), updates.get(error.getIndex()),
+                                          ResumenPeriodo.class);
+            }
+        }
+    }
+
+    /**
+     * Consulta de un periodo por {@code _id}; con evento, sólo si el día aún no lo incluye.
+     */
+    private static Query consultaPeriodo(String id, String prefijo, String evento) {
+        Criteria criterio = Criteria.where("_id").is(id);
+        if (evento != null) {
+            criterio = criterio.and(prefijo + "eventos").ne(evento);
+        }
+        return new Query(criterio);
+    }
+
+    /**
+     * Construye la actualización de un día dentro de un periodo: {@code $inc} y
+     * {@code $addToSet} del evento, o {@code $set} de los totales y sus eventos.
+     */
+    private static Update actualizacion(String prefijo, TotalesDia t, String evento,
+                                        String usuarioId, String tipo, LocalDate inicio) {
+        Update update = new Update();
+        if (evento != null) {
+            update.inc(prefijo + "proteinasG", t.getProteinasG())
+                  .inc(prefijo + "carbohidratosG", t.getCarbohidratosG())
+                  .inc(prefijo + "grasasG", t.getGrasasG())
+                  .inc(prefijo + "calorias", t.getCalorias())
+                  .addToSet(prefijo + "eventos", evento);
+        } else {
+            update.set(prefijo + "proteinasG", t.getProteinasG())
+                  .set(prefijo + "carbohidratosG", t.getCarbohidratosG())
+                  .set(prefijo + "grasasG", t.getGrasasG())
+                  .set(prefijo + "calorias", t.getCalorias())
+                  .set(prefijo + "eventos", eventos(t));
+        }
+        return update.setOnInsert("usuarioId", usuarioId)
+                     .setOnInsert("tipo", tipo)
+                     .setOnInsert("inicio", inicio);
+    }
+
+    /**
+     * Aplica el consumo de un día a su ranura de la ventana móvil con una única
+     * actualización atómica (pipeline de agregación), según la fecha guardada en la ranura:
+     * <ul>
+     *   <li>Misma fecha y el evento ya incluido: no se toca.</li>
+     *   <li>Misma fecha: suma (o sustituye, sin evento).</li>
+     *   <li>Fecha anterior o ranura vacía: la ranura pasa a ser de este día.</li>
+     *   <li>Fecha posterior: el día ya salió de la ventana y no se toca.</li>
+     * </ul>
+     *
+     * Se usa el driver directamente porque {@link Update} no admite actualizaciones
+     * condicionales sobre el valor previo de un campo.
+     *
+     * @param evento ID de la comida a sumar, o null para sustituir los totales del día
+     */
+    private void actualizarVentana(String usuarioId, LocalDate fecha, TotalesDia t, String evento) {
+        String slot = "slots." + Math.floorMod(fecha.toEpochDay(), VentanaNutricional.DIAS);
+        String ref = "$" + slot + ".";
+        String f = fecha.toString();
+
+        Document eventosSlot = new Document("$ifNull", List.of(ref + "eventos", List.of()));
+        Document nuevo = new Document("fecha", f)
+                .append("proteinasG", t.getProteinasG())
+                .append("carbohidratosG", t.getCarbohidratosG())
+                .append("grasasG", t.getGrasasG())
+                .append("calorias", t.getCalorias())
+                .append("eventos", new Document("$literal", evento != null ? List.of(evento) : eventos(t)));
+        Document mismoDia = evento == null ? nuevo : new Document("fecha", f)
+                .append("proteinasG", new Document("$add", List.of(ref + "proteinasG", t.getProteinasG())))
+                .append("carbohidratosG", new Document("$add", List.of(ref + "carbohidratosG", t.getCarbohidratosG())))
+                .append("grasasG", new Document("$add", List.of(ref + "grasasG", t.getGrasasG())))
+                .append("calorias", new Document("$add", List.of(ref + "calorias", t.getCalorias())))
+                .append("eventos", new Document("$concatArrays",
+                        List.of(eventosSlot, new Document("$literal", List.of(evento)))));
+        Document fechaSlot = new Document("$ifNull", List.of(ref + "fecha", ""));
+
+        List<Document> ramas = new ArrayList<>();
+        if (evento != null) {
+            ramas.add(new Document("case", new Document("$and", List.of(
+                            new Document("$eq", List.of(fechaSlot, f)),
+                            new Document("$in", List.of(new Document("$literal", evento), eventosSlot)))))
+                      .append("then", "$" + slot));
+        }
+        ramas.add(new Document("case", new Document("$eq", List.of(fechaSlot, f))).append("then", mismoDia));
+        ramas.add(new Document("case", new Document("$lt", List.of(fechaSlot, f))).append("then", nuevo));
+        Document valor = new Document("$switch", new Document("branches", ramas).append("default", "$" + slot));
+
+        List<Bson> pipeline = List.of(new Document("$set", new Document(slot, valor)));
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(VentanaNutricional.class))
+                     .updateOne(Filters.eq("_id", usuarioId), pipeline, new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * IDs de las comidas incluidas en unos totales fijados (vacío si no se conocen).
+     */
+    private static List<String> eventos(TotalesDia t) {
+        return t.getEventos() != null ? t.getEventos() : List.of();
+    }
+
+    /**
+     * Lee un periodo y calcula sus estadísticas. Si no hay documento, el periodo no tiene consumo.
+     */
+    private ResumenPeriodoDTO resumirPeriodo(String usuarioId, Document usuario, String tipo, String id,
+                                             LocalDate desde, LocalDate hasta) {
+        ResumenPeriodo periodo = mongoTemplate.findById(id, ResumenPeriodo.class);
+        Map<String, TotalesDia> dias = periodo != null ? periodo.getDias() : new HashMap<>();
+        ResumenPeriodoDTO dto = resumir(tipo, usuario, desde, hasta, dias);
+        // La racha actual siempre se mide hasta hoy, con independencia del periodo consultado
+        dto.setRachaActual(rachaActual(ventana(usuarioId), usuario));
+        return dto;
+    }
+
+    /**
+     * Calcula promedios, adherencia y racha máxima de los días entre dos fechas (incluidas).
+     */
+    private ResumenPeriodoDTO resumir(String tipo, Document usuario, LocalDate desde, LocalDate hasta,
+                                      Map<String, TotalesDia> dias) {
+        double calObj = numero(usuario, "caloriasObjetivo");
+        Document macObj = usuario.get("macrosObjetivo", Document.class) != null
+                          ? usuario.get("macrosObjetivo", Document.class)
+                          : new Document();
+
+        double prot = 0, carb = 0, grasa = 0, cal = 0;
+        int registrados = 0, cumplidos = 0, racha = 0, rachaMaxima = 0;
+        for (LocalDate d = desde; !d.isAfter(hasta); d = d.plusDays(1)) {
+            TotalesDia t = dias.get(d.toString());
+            if (t == null) {
+                racha = 0;
+                continue;
+            }
+            registrados++;
+            prot  += t.getProteinasG();
+            carb  += t.getCarbohidratosG();
+            grasa += t.getGrasasG();
+            cal   += t.getCalorias();
+            if (cumple(t.getCalorias(), calObj)) {
+                cumplidos++;
+                rachaMaxima = Math.max(rachaMaxima, ++racha);
+            } else {
+                racha = 0;
+            }
+        }
+
+        int n = Math.max(1, registrados);
+
+        Macros objetivo = new Macros();
+        objetivo.setProteinasG(Math.round(numero(macObj, "proteinasG")));
+        objetivo.setCarbohidratosG(Math.round(numero(macObj, "carbohidratosG")));
+        objetivo.setGrasasG(Math.round(numero(macObj, "grasasG")));
+
+        Macros promedio = new Macros();
+        promedio.setProteinasG(Math.round(prot / n));
+        promedio.setCarbohidratosG(Math.round(carb / n));
+        promedio.setGrasasG(Math.round(grasa / n));
+
+        ResumenPeriodoDTO dto = new ResumenPeriodoDTO();
+        dto.setTipo(tipo);
+        dto.setDesde(desde.toString());
+        dto.setHasta(hasta.toString());
+        dto.setDiasRegistrados(registrados);
+        dto.setCaloriasObjetivo(Math.round(calObj));
+        dto.setCaloriasPromedio(Math.round(cal / n));
+        dto.setPorcentajeObjetivo(calObj > 0 ? Math.round(cal / n / calObj * 100) : 0);
+        dto.setMacrosObjetivo(objetivo);
+        dto.setMacrosPromedio(promedio);
+        dto.setAdherencia(registrados > 0 ? Math.round(cumplidos * 100.0 / registrados) : 0);
+        dto.setRachaMaxima(rachaMaxima);
+        return dto;
+    }
+
+    /**
+     * Días seguidos cumpliendo el objetivo hasta hoy. El día en curso sólo cuenta
+     * si ya lo cumple: mientras no, la racha se mide hasta ayer. Con la ventana
+     * móvil la racha se ve como mucho {@link VentanaNutricional#DIAS} días atrás.
+     */
+    private int rachaActual(Map<String, TotalesDia> dias, Document usuario) {
+        double calObj = numero(usuario, "caloriasObjetivo");
+        LocalDate d = hoy(usuario);
+        TotalesDia hoy = dias.get(d.toString());
+        if (hoy == null || !cumple(hoy.getCalorias(), calObj)) {
+            d = d.minusDays(1);
+        }
+        int racha = 0;
+        for (TotalesDia t = dias.get(d.toString()); t != null && cumple(t.getCalorias(), calObj);
+             d = d.minusDays(1), t = dias.get(d.toString())) {
+            racha++;
+        }
+        return racha;
+    }
+
+    /**
+     * Indica si unas calorías están dentro de la tolerancia respecto al objetivo.
+     */
+    private boolean cumple(double calorias, double objetivo) {
+        return objetivo > 0 && Math.abs(calorias - objetivo) <= objetivo * tolerancia;
+    }
+
+    /**
+     * Lee la ventana móvil del usuario indexada por fecha.
+     */
+    private Map<String, TotalesDia> ventana(String usuarioId) {
+        Map<String, TotalesDia> porFecha = new HashMap<>();
+        VentanaNutricional ventana = mongoTemplate.findById(usuarioId, VentanaNutricional.class);
+        if (ventana != null) {
+            ventana.getSlots().values().forEach(t -> porFecha.put(t.getFecha(), t));
+        }
+        return porFecha;
+    }
+
+    /**
+     * Lee los objetivos y la hora de inicio del usuario (proyección sobre {@code usuarios}).
+     *
+     * @throws ResponseStatusException 404 si el usuario no existe
+     */
+    private Document leerUsuario(String usuarioId) {
+        Query query = new Query(Criteria.where("_id").is(usuarioId));
+        query.fields().include("caloriasObjetivo", "macrosObjetivo", "horaInicioDia");
+        Document usuario = mongoTemplate.findOne(query, Document.class, "usuarios");
+        if (usuario == null) {
+            throw new ResponseStatusException(NOT_FOUND, "Usuario no encontrado");
+        }
+        return usuario;
+    }
+
+    /**
+     * Día nutricional en curso del usuario.
+     */
+    private static LocalDate hoy(Document usuario) {
+        return Usuario.fechaEfectiva(Usuario.parsearHoraInicio(usuario.getString("horaInicioDia")));
+    }
+
+    private static double numero(Document doc, String campo) {
+        Object valor = doc.get(campo);
+        return valor instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    private static String idSemana(String usuarioId, LocalDate lunes) {
+        return usuarioId + ":semana:" + lunes;
+    }
+
+    private static String idMes(String usuarioId, YearMonth mes) {
+        return usuarioId + ":mes:" + mes;
+    }
+}
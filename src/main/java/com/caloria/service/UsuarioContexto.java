@@ -0,0 +1,135 @@
+package com.caloria.service;
+
+import com.caloria.model.Usuario;
+import com.caloria.repository.UsuarioRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+
+/**
+ * Instantánea de los usuarios leídos durante una petición HTTP.
+ *
+ * Dentro de una petición, cada usuario se lee de MongoDB como mucho una vez:
+ * todos los servicios ({@link UsuarioService}, {@link PerfilService}...) reciben
+ * la misma instancia, y tras guardarla se actualiza con {@link #actualizar(Usuario)}.
+ * Fuera de una petición (tareas programadas, hilos de persistencia) cada
+ * llamada lee de MongoDB.
+ *
+ * Las tareas que {@link EjecutorIA} lanza en otro hilo comparten la instantánea
+ * de la petición que las originó (ver {@link #propagar(Callable)}).
+ *
+ * Métrica {@code usuario.lecturas} con la etiqueta {@code resultado}:
+ * {@code realizada} (lectura de MongoDB) o {@code evitada} (servida de la instantánea).
+ */
+@Component
+public class UsuarioContexto {
+
+    private static final String ATRIBUTO = UsuarioContexto.class.getName();
+
+    /** Instantáneas de la petición de origen, en los hilos de tareas asíncronas */
+    private static final ThreadLocal<Map<String, Usuario>> PROPAGADAS = new ThreadLocal<>();
+
+    private final UsuarioRepository usuarioRepo;
+    private final Counter realizadas;
+    private final Counter evitadas;
+
+    public UsuarioContexto(UsuarioRepository usuarioRepo, MeterRegistry registry) {
+        this.usuarioRepo = usuarioRepo;
+        this.realizadas  = registry.counter("usuario.lecturas", "resultado", "realizada");
+        this.evitadas    = registry.counter("usuario.lecturas", "resultado", "evitada");
+    }
+
+    /**
+     * Devuelve el usuario, leyéndolo de MongoDB sólo si aún no se leyó en esta petición.
+     *
+     * @param usuarioId ID del usuario
+     * @return Instantánea del usuario (la misma instancia durante toda la petición)
+     * @throws ResponseStatusException 404 si el usuario no existe
+     */
+    public Usuario obtener(String usuarioId) {
+        Map<String, Usuario> instantaneas = instantaneas();
+        Usuario usuario = instantaneas != null ? instantaneas.get(usuarioId) : null;
+        if (usuario != null) {
+            evitadas.increment();
+            return usuario;
+        }
+
+        realizadas.increment();
+        usuario = usuarioRepo.findById(usuarioId)
+            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        if (instantaneas != null) {
+            instantaneas.put(usuarioId, usuario);
+        }
+        return usuario;
+    }
+
+    /**
+     * Sustituye la instantánea por el usuario recién guardado.
+     *
+     * @param usuario Usuario tal como quedó tras guardarlo
+     */
+    public void actualizar(Usuario usuario) {
+        Map<String, Usuario> instantaneas = instantaneas();
+        if (instantaneas != null && usuario.getId() != null) {
+            instantaneas.put(usuario.getId(), usuario);
+        }
+    }
+
+    /**
+     * Envuelve una tarea para que, al ejecutarse en otro hilo, comparta las
+     * instantáneas de la petición actual. Debe llamarse desde el hilo de la petición.
+     *
+     * @param tarea Tarea a ejecutar en otro hilo
+     * @param <T> Tipo del resultado
+     * @return Tarea que usa las instantáneas de la petición actual
+     */
+    public <T> Callable<T> propagar(Callable<T> tarea) {
+        Map<String, Usuario> instantaneas = instantaneas();
+        if (instantaneas == null) {
+            return tarea;
+        }
+        return () -> {
+            PROPAGADAS.set(instantaneas);
+            try {
+                return tarea.call();
+            } finally {
+                PROPAGADAS.remove();
+            }
+        };
+    }
+
+    /**
+     * Instantáneas del contexto actual: las propagadas a este hilo o las de la
+     * petición en curso (creándolas si hace falta). Null fuera de una petición.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Usuario> instantaneas() {
+        Map<String, Usuario> propagadas = PROPAGADAS.get();
+        if (propagadas != null) {
+            return propagadas;
+        }
+        RequestAttributes peticion = RequestContextHolder.getRequestAttributes();
+        if (peticion == null) {
+            return null;
+        }
+        Map<String, Usuario> instantaneas =
+                (Map<String, Usuario>) peticion.getAttribute(ATRIBUTO, RequestAttributes.SCOPE_REQUEST);
+        if (instantaneas == null) {
+            // Sincronizado: una tarea propagada puede compartir el mapa con el hilo de la petición
+            instantaneas = Collections.synchronizedMap(new HashMap<>());
+            peticion.setAttribute(ATRIBUTO, instantaneas, RequestAttributes.SCOPE_REQUEST);
+        }
+        return instantaneas;
+    }
+}
@@ -12,15 +12,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.stereotype.Service;
-import org.springframework.web.server.ResponseStatusException;
 
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
 
-import static org.springframework.http.HttpStatus.NOT_FOUND;
-
 /**
  * Servicio principal para la gestión de usuarios, enfocado en la creación,
  * actualización y lectura de perfiles nutricionales, así como el manejo
@@ -41,6 +38,7 @@ public class UsuarioService {
 
     private final UsuarioRepository      usuarioRepo;
     private final CatalogoRecetasService catalogo;
+    private final UsuarioContexto        contexto;
 
     /**
      * Paso global para crear o actualizar un perfil completo en una única operación.
@@ -73,6 +71,7 @@ public class UsuarioService {
         u.setAlergias(dto.getAlergias());
 
         Usuario guardado = usuarioRepo.save(u);
+        contexto.actualizar(guardado);
         log.debug("Perfil completo guardado para uid={}", uid);
         return guardado;
     }
@@ -94,9 +93,12 @@ public class UsuarioService {
     /* ------------------------------------------------------------ */
     /* Lectura de perfil                                            */
     /* ------------------------------------------------------------ */
+    /**
+     * Devuelve el perfil del usuario. Dentro de una petición se lee una sola vez
+     * y se comparte con el resto de servicios ({@link UsuarioContexto}).
+     */
     public Usuario obtenerPerfil(String uid) {
-        return usuarioRepo.findById(uid)
-            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Usuario no encontrado"));
+        return contexto.obtener(uid);
     }
 
     /**
@@ -115,6 +117,7 @@ public class UsuarioService {
         u.setBasicosCompletos(true);
 
         Usuario saved = usuarioRepo.save(u);
+        contexto.actualizar(saved);
         log.debug("Básicos completados para uid={}", uid);
         return saved;
     }
@@ -128,6 +131,7 @@ public class UsuarioService {
         u.setNivelActividad(nivel);
         u.setActividadCompleta(true);
         Usuario saved = usuarioRepo.save(u);
+        contexto.actualizar(saved);
         log.debug("Actividad '{}' guardada para uid={}", nivel, uid);
         return saved;
     }
@@ -158,6 +162,7 @@ public class UsuarioService {
 
         // 3) Guarda y loggea
         Usuario saved = usuarioRepo.save(u);
+        contexto.actualizar(saved);
         log.debug("Preferencias guardadas para uid={}", uid);
         return saved;
     }
@@ -183,10 +188,10 @@ public class UsuarioService {
         Usuario u = obtenerPerfil(uid);
 
         Set<String> ids = new LinkedHashSet<>(u.getRecetas());
-        nuevas.forEach(r -> ids.add(catalogo.saveIfNotExists(r).getId()));
+        catalogo.upsertAll(nuevas).forEach(r -> ids.add(r.getId()));
         u.setRecetas(new ArrayList<>(ids));
 
-        usuarioRepo.save(u);
+        contexto.actualizar(usuarioRepo.save(u));
         log.debug("{} recetas guardadas para uid={}", nuevas.size(), uid);
         return catalogo.findAllByIds(u.getRecetas());
     }
@@ -201,7 +206,7 @@ public class UsuarioService {
     public void eliminarRecetaUsuario(String uid, String recetaId) {
         Usuario u = obtenerPerfil(uid);
         if (u.getRecetas().remove(recetaId)) {
-            usuarioRepo.save(u);
+            contexto.actualizar(usuarioRepo.save(u));
             log.debug("Receta {} eliminada de uid={}", recetaId, uid);
         }
     }
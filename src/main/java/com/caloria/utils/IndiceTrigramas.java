@@ -0,0 +1,164 @@
+package com.caloria.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice en memoria para búsquedas aproximadas por nombre usando trigramas.
+ *
+ * Cada clave se descompone en trigramas de caracteres (por palabra, con relleno
+ * de espacios al estilo de {@code pg_trgm}) y la similitud entre dos nombres es
+ * el coeficiente de Jaccard entre sus conjuntos de trigramas (0 a 1).
+ *
+ * Tolera faltas de ortografía, tildes y palabras omitidas:
+ * "pechuga pollo" frente a "pechuga de pollo" da ≈ 0.81,
+ * "platano" frente a "plátano" da 1.0.
+ *
+ * Es seguro para uso concurrente: está respaldado por mapas concurrentes
+ * y las búsquedas no bloquean a las escrituras.
+ *
+ * @param <T> Tipo del valor asociado a cada clave
+ */
+public class IndiceTrigramas<T> {
+
+    /** Resultado de una búsqueda aproximada: valor encontrado, su clave y la similitud */
+    public record Coincidencia<T>(String clave, T valor, double similitud) {}
+
+    private record Entrada<T>(T valor, Set<String> trigramas) {}
+
+    /** clave normalizada → valor y sus trigramas */
+    private final Map<String, Entrada<T>> entradas = new ConcurrentHashMap<>();
+
+    /** trigrama → claves que lo contienen (lista invertida) */
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Agrega (o reemplaza) una entrada en el índice.
+     *
+     * @param nombre Nombre original; se normaliza internamente
+     * @param valor Valor asociado
+     */
+    public void agregar(String nombre, T valor) {
+        String clave = claveDe(nombre);
+        Set<String> trigramas = trigramas(clave);
+        Entrada<T> anterior = entradas.put(clave, new Entrada<>(valor, trigramas));
+        if (anterior != null) {
+            return; // mismos trigramas: las listas invertidas ya están al día
+        }
+        for (String t : trigramas) {
+            postings.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(clave);
+        }
+    }
+
+    /**
+     * Elimina una entrada del índice, si existe.
+     *
+     * @param nombre Nombre original; se normaliza internamente
+     */
+    public void eliminar(String nombre) {
+        String clave = claveDe(nombre);
+        Entrada<T> anterior = entradas.remove(clave);
+        if (anterior == null) {
+            return;
+        }
+        for (String t : anterior.trigramas()) {
+            Set<String> claves = postings.get(t);
+            if (claves != null) {
+                claves.remove(clave);
+            }
+        }
+    }
+
+    /**
+     * Busca la entrada más parecida al nombre dado.
+     *
+     * @param nombre Nombre a buscar
+     * @param umbral Similitud mínima aceptada (0 a 1)
+     * @return La mejor coincidencia con similitud ≥ umbral, o vacío
+     */
+    public Optional<Coincidencia<T>> buscarMejor(String nombre, double umbral) {
+        Set<String> consulta = trigramas(claveDe(nombre));
+        if (consulta.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Cuenta trigramas compartidos con cada candidato
+        Map<String, Integer> compartidos = new HashMap<>();
+        for (String t : consulta) {
+            Set<String> claves = postings.get(t);
+            if (claves == null) continue;
+            for (String clave : claves) {
+                compartidos.merge(clave, 1, Integer::sum);
+            }
+        }
+
+        Coincidencia<T> mejor = null;
+        for (Map.Entry<String, Integer> e : compartidos.entrySet()) {
+            Entrada<T> entrada = entradas.get(e.getKey());
+            if (entrada == null) continue;
+            int comunes = e.getValue();
+            double jaccard = (double) comunes
+                    / (consulta.size() + entrada.trigramas().size() - comunes);
+            if (jaccard >= umbral && (mejor == null || jaccard > mejor.similitud())) {
+                mejor = new Coincidencia<>(e.getKey(), entrada.valor(), jaccard);
+            }
+        }
+        return Optional.ofNullable(mejor);
+    }
+
+    /**
+     * Calcula la similitud (Jaccard de trigramas, 0 a 1) entre dos nombres sueltos,
+     * sin necesidad de indexarlos.
+     *
+     * @param a Primer nombre
+     * @param b Segundo nombre
+     * @return Similitud entre ambos
+     */
+    public static double similitud(String a, String b) {
+        Set<String> ta = trigramas(claveDe(a));
+        Set<String> tb = trigramas(claveDe(b));
+        if (ta.isEmpty() || tb.isEmpty()) {
+            return 0;
+        }
+        int comunes = 0;
+        for (String t : ta) {
+            if (tb.contains(t)) comunes++;
+        }
+        return (double) comunes / (ta.size() + tb.size() - comunes);
+    }
+
+    /**
+     * @return Número de entradas indexadas
+     */
+    public int size() {
+        return entradas.size();
+    }
+
+    /**
+     * Normaliza un nombre para comparar: minúsculas, sin tildes y sin signos.
+     */
+    private static String claveDe(String nombre) {
+        return TextoUtils.normalizar(TextoUtils.sinAcentos(nombre))
+                         .replaceAll("[^a-z0-9 ]", "")
+                         .trim();
+    }
+
+    /**
+     * Descompone una clave en trigramas por palabra ("  p", " po", "pol", ..., "lo ").
+     */
+    private static Set<String> trigramas(String clave) {
+        Set<String> resultado = new HashSet<>();
+        for (String palabra : clave.split(" ")) {
+            if (palabra.isEmpty()) continue;
+            String relleno = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= relleno.length(); i++) {
+                resultado.add(relleno.substring(i, i + 3));
+            }
+        }
+        return resultado;
+    }
+}
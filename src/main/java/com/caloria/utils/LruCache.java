@@ -0,0 +1,60 @@
+package com.caloria.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché en memoria acotada con política LRU (se descarta la entrada usada
+ * hace más tiempo al superar la capacidad).
+ *
+ * Es segura para uso concurrente: todas las operaciones se sincronizan
+ * sobre la propia caché, pensada para tamaños de cientos o miles de entradas.
+ *
+ * @param <K> Tipo de la clave
+ * @param <V> Tipo del valor
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> entradas;
+
+    /**
+     * @param capacidad Número máximo de entradas retenidas
+     */
+    public LruCache(int capacidad) {
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    /**
+     * @param clave Clave buscada
+     * @return Valor asociado, o null si no está en caché
+     */
+    public synchronized V get(K clave) {
+        return entradas.get(clave);
+    }
+
+    /**
+     * Guarda (o reemplaza) una entrada, descartando la menos usada si hace falta.
+     */
+    public synchronized void put(K clave, V valor) {
+        entradas.put(clave, valor);
+    }
+
+    /**
+     * Elimina una entrada, si existe.
+     */
+    public synchronized void remove(K clave) {
+        entradas.remove(clave);
+    }
+
+    /**
+     * @return Número de entradas actualmente en caché
+     */
+    public synchronized int size() {
+        return entradas.size();
+    }
+}
@@ -0,0 +1,128 @@
+package com.caloria.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Clase utilitaria para normalizar textos ingresados por el usuario,
+ * especialmente nombres de alimentos usados como clave de búsqueda.
+ *
+ * La normalización es determinista: dos nombres que sólo difieren en
+ * mayúsculas o espacios producen la misma clave.
+ *
+ * Para nombres de alimentos se ofrece además una forma canónica más agresiva
+ * (sin tildes, sin palabras vacías y con plural/género reducidos), pensada para
+ * que "Plátanos", "platano" y "el plátano" se resuelvan al mismo registro.
+ */
+public final class TextoUtils {
+
+    /** Palabras vacías que no aportan a la identidad de un alimento */
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "de", "del", "con", "y", "a", "al", "en",
+            "el", "la", "los", "las", "un", "una", "unos", "unas");
+
+    // Constructor privado para evitar instanciación
+    private TextoUtils() {}
+
+    /**
+     * Normaliza un nombre: recorta, pasa a minúsculas y colapsa espacios repetidos.
+     *
+     * @param texto Texto original (puede ser null)
+     * @return Clave normalizada, o cadena vacía si el texto es null
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return texto.trim()
+                    .toLowerCase(Locale.ROOT)
+                    .replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Elimina tildes y diacríticos (p. ej. "plátano" → "platano", "piña" → "pina").
+     *
+     * @param texto Texto original (puede ser null)
+     * @return Texto sin marcas diacríticas, o cadena vacía si el texto es null
+     */
+    public static String sinAcentos(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return Normalizer.normalize(texto, Normalizer.Form.NFD)
+                         .replaceAll("\\p{M}", "");
+    }
+
+    /**
+     * Obtiene la forma canónica de un nombre de alimento en español:
+     * <ol>
+     *   <li>elimina tildes y pasa a minúsculas</li>
+     *   <li>descarta signos de puntuación</li>
+     *   <li>quita palabras vacías ("de", "con", "la"...)</li>
+     *   <li>reduce plural y género de cada palabra ("manzanas" → "manzan", "limones" → "limon")</li>
+     * </ol>
+     *
+     * Ejemplo: "Pechugas de Pollo" → "pechug poll".
+     *
+     * @param nombre Nombre original (puede ser null)
+     * @return Clave canónica, o cadena vacía si el nombre es null
+     */
+    public static String canonicalizarAlimento(String nombre) {
+        String limpio = normalizar(sinAcentos(nombre)).replaceAll("[^a-z0-9 ]", " ");
+        StringJoiner canonico = new StringJoiner(" ");
+        for (String palabra : limpio.split(" ")) {
+            if (palabra.isEmpty() || PALABRAS_VACIAS.contains(palabra)) continue;
+            canonico.add(raiz(palabra));
+        }
+        String resultado = canonico.toString();
+        // Si todo eran palabras vacías, se conserva el texto limpio
+        return resultado.isEmpty() ? limpio.trim() : resultado;
+    }
+
+    /**
+     * Reduce una palabra a una raíz aproximada eliminando plural y género.
+     * Las palabras de 3 letras o menos no se tocan ("pan", "ajo", "te").
+     */
+    private static String raiz(String palabra) {
+        String p = palabra;
+        if (p.length() > 3 && p.endsWith("s")) {
+            p = p.substring(0, p.length() - 1);             // tomates → tomate, nueces → nuece
+        }
+        if (p.length() > 3 && p.endsWith("z")) {
+            p = p.substring(0, p.length() - 1) + "c";       // nuez → nuec (igual que nuece → nuec)
+        }
+        if (p.length() > 3 && p.endsWith("e") && !esVocal(p.charAt(p.length() - 2))) {
+            p = p.substring(0, p.length() - 1);             // tomate → tomat, limone → limon
+        }
+        if (p.length() > 3 && (p.endsWith("o") || p.endsWith("a"))) {
+            p = p.substring(0, p.length() - 1);             // cocido/cocida → cocid
+        }
+        return p;
+    }
+
+    private static boolean esVocal(char c) {
+        return "aeiou".indexOf(c) >= 0;
+    }
+
+    /**
+     * Resume un texto con SHA-256 en hexadecimal, p. ej. para usarlo como
+     * clave de caché sin retener el texto original.
+     *
+     * @param texto Texto a resumir
+     * @return Resumen de 64 caracteres hexadecimales
+     */
+    public static String resumenSha256(String texto) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(texto.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.caloria.benchmark;
+
+import com.caloria.model.Dia;
+import com.caloria.model.Usuario;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Coste de resolver el día actual de un usuario según el tamaño de su historial.
+ *
+ * <ul>
+ *   <li>{@code recorridoLineal}: el algoritmo anterior de {@code Usuario.obtenerDiaActual},
+ *       que parseaba la hora de inicio y recorría el historial embebido desde el día más antiguo</li>
+ *   <li>{@code busquedaPorClave}: el actual, con la hora de inicio ya parseada
+ *       ({@link Usuario#parsearHoraInicio}) y el día buscado por (usuarioId, fecha),
+ *       simulado aquí con un mapa en lugar del índice único de {@code dias}</li>
+ * </ul>
+ *
+ * Ejecución:
+ * <pre>
+ * ./mvnw test-compile
+ * java -cp target/test-classes:target/classes:$(./mvnw -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *      com.caloria.benchmark.DiaActualBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiaActualBenchmark {
+
+    private static final String HORA_INICIO = "04:00";
+
+    @Param({"10", "1000", "5000"})
+    private int dias;
+
+    private List<Dia> historial;
+    private Map<LocalDate, Dia> porFecha;
+
+    @Setup
+    public void crearHistorial() {
+        LocalDate hoy = Usuario.fechaEfectiva(LocalTime.parse(HORA_INICIO));
+        historial = new ArrayList<>(dias);
+        porFecha  = new HashMap<>();
+        // Del más antiguo al más reciente, como se guardaba el historial embebido
+        for (int i = dias - 1; i >= 0; i--) {
+            Dia dia = new Dia();
+            dia.setFecha(hoy.minusDays(i));
+            historial.add(dia);
+            porFecha.put(dia.getFecha(), dia);
+        }
+    }
+
+    @Benchmark
+    public Dia recorridoLineal() {
+        LocalDate fecha = Usuario.fechaEfectiva(LocalTime.parse(HORA_INICIO));
+        for (Dia dia : historial) {
+            if (dia.getFecha().equals(fecha)) {
+                return dia;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Dia busquedaPorClave() {
+        LocalDate fecha = Usuario.fechaEfectiva(Usuario.parsearHoraInicio(HORA_INICIO));
+        return porFecha.get(fecha);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DiaActualBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.caloria.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compara hilos de plataforma y virtuales para el patrón de carga de la API:
+ * muchas peticiones simultáneas que pasan casi todo su tiempo bloqueadas
+ * esperando a OpenAI o a MongoDB.
+ *
+ * Cada operación lanza {@code peticiones} tareas que se bloquean {@code bloqueoMs}
+ * y espera a que terminen todas. El modo {@code plataforma} usa un pool de 200 hilos
+ * (el máximo por defecto de Tomcat); el modo {@code virtual}, un hilo virtual por tarea.
+ *
+ * El modo virtual requiere Java 21:
+ * <pre>
+ * ./mvnw -Pjava21 test-compile
+ * java -cp target/test-classes:$(./mvnw -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *      com.caloria.benchmark.HilosVirtualesBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HilosVirtualesBenchmark {
+
+    /** Hilos del pool de plataforma: el máximo por defecto de Tomcat */
+    private static final int HILOS_PLATAFORMA = 200;
+
+    @Param({"plataforma", "virtual"})
+    private String modo;
+
+    @Param({"200", "2000"})
+    private int peticiones;
+
+    /** Tiempo que cada petición pasa bloqueada, como si esperase a la red */
+    @Param({"50"})
+    private long bloqueoMs;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void crearEjecutor() throws ReflectiveOperationException {
+        if ("virtual".equals(modo)) {
+            // Por reflexión para que el benchmark compile también con Java 17
+            executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } else {
+            executor = Executors.newFixedThreadPool(HILOS_PLATAFORMA);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrarEjecutor() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int peticionesBloqueadas() throws Exception {
+        List<Future<Integer>> futuros = new ArrayList<>(peticiones);
+        for (int i = 0; i < peticiones; i++) {
+            int n = i;
+            futuros.add(executor.submit(() -> {
+                Thread.sleep(bloqueoMs);
+                return n;
+            }));
+        }
+        int suma = 0;
+        for (Future<Integer> f : futuros) {
+            suma += f.get();
+        }
+        return suma;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HilosVirtualesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.caloria.benchmark;
+
+import com.caloria.config.JwtAuthenticationFilter;
+import com.caloria.service.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Coste por petición de autenticar un JWT en {@link JwtAuthenticationFilter}.
+ *
+ * <ul>
+ *   <li>{@code filtro} con {@code cache=0}: un único parseo con el parser reutilizado
+ *       de {@link JwtService}, sin caché (cada petición verifica el HMAC)</li>
+ *   <li>{@code filtro} con {@code cache=10000}: el mismo token repetido, servido
+ *       desde la caché de tokens verificados</li>
+ *   <li>{@code dobleParseoAnterior}: el algoritmo anterior, que construía un parser
+ *       nuevo y verificaba el token dos veces (validar y extraer el usuario)</li>
+ * </ul>
+ *
+ * Ejecución:
+ * <pre>
+ * ./mvnw test-compile
+ * java -cp target/test-classes:target/classes:$(./mvnw -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *      com.caloria.benchmark.JwtFiltroBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFiltroBenchmark {
+
+    private static final String SECRETO = "clave-de-benchmark-de-al-menos-32-bytes";
+
+    /** Capacidad de la caché de tokens verificados (0 = sin caché) */
+    @Param({"0", "10000"})
+    private int cache;
+
+    private JwtAuthenticationFilter filtro;
+    private Key key;
+    private String token;
+
+    @Setup
+    public void crearFiltro() {
+        JwtService jwtService = new JwtService(SECRETO, new SimpleMeterRegistry(), cache);
+        filtro = new JwtAuthenticationFilter(jwtService);
+        key    = Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8));
+        token  = jwtService.generateToken("usuario-benchmark", "USER");
+    }
+
+    @Benchmark
+    public Authentication filtro() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/dia/resumen");
+        request.addHeader("Authorization", "Bearer " + token);
+        filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return auth;
+    }
+
+    @Benchmark
+    public String dobleParseoAnterior() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/dia/resumen");
+        request.addHeader("Authorization", "Bearer " + token);
+        String t = request.getHeader("Authorization").substring(7);
+
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(t);
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(t).getBody().getSubject();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtFiltroBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,54 @@
+package com.caloria.config;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Comprueba que, con {@code openai.base-url}, el cliente de OpenAI habla con
+ * un servidor simulado local en lugar de con la API real.
+ */
+class OkHttpClientConfigTests {
+
+    private MockWebServer servidor;
+
+    @BeforeEach
+    void iniciar() throws IOException {
+        servidor = new MockWebServer();
+        servidor.start();
+    }
+
+    @AfterEach
+    void detener() throws IOException {
+        servidor.shutdown();
+    }
+
+    @Test
+    void redirigeALaUrlBaseConservandoLaRuta() throws Exception {
+        servidor.enqueue(new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"id\":\"run_1\",\"status\":\"in_progress\"}"));
+        OkHttpClient cliente = new OkHttpClientConfig().okHttpClientWithHeader(servidor.url("/").toString());
+
+        try (Response respuesta = cliente.newCall(new Request.Builder()
+                .url("https://api.openai.com/v1/threads/thread_1/runs/run_1")
+                .build()).execute()) {
+            assertThat(respuesta.body().string()).startsWith("{\"file_ids\":[],");
+        }
+
+        RecordedRequest peticion = servidor.takeRequest();
+        assertThat(peticion.getPath()).isEqualTo("/v1/threads/thread_1/runs/run_1");
+        assertThat(peticion.getHeader("OpenAI-Beta")).isEqualTo("assistants=v2");
+    }
+}
@@ -0,0 +1,123 @@
+package com.caloria.service;
+
+import com.cjcrafter.openai.OpenAI;
+import com.cjcrafter.openai.assistants.Assistant;
+import com.cjcrafter.openai.threads.Thread;
+import com.cjcrafter.openai.threads.ThreadHandler;
+import com.cjcrafter.openai.threads.message.MessageHandler;
+import com.cjcrafter.openai.threads.runs.ListRunStepsResponse;
+import com.cjcrafter.openai.threads.runs.Run;
+import com.cjcrafter.openai.threads.runs.RunHandler;
+import com.cjcrafter.openai.threads.runs.RunStatus;
+import com.cjcrafter.openai.threads.runs.RunStepHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Espera de las ejecuciones del asistente ({@code IAService.ejecutarAsistente}):
+ * consultas de estado con espera exponencial, cancelación y 504 al vencer el plazo,
+ * y 502 si la ejecución termina sin completarse.
+ *
+ * El cliente de OpenAI se sustituye por dobles de sus manejadores; la redirección
+ * HTTP a un servidor local se prueba en {@code OkHttpClientConfigTests}.
+ */
+class IAServiceEjecucionTests {
+
+    private IAService servicio;
+    private RunHandler runs;
+    private Assistant asistente;
+
+    @BeforeEach
+    void preparar() {
+        OpenAI openai = mock(OpenAI.class);
+        ThreadHandler threads = mock(ThreadHandler.class);
+        Thread hilo = mock(Thread.class);
+        runs = mock(RunHandler.class);
+        asistente = mock(Assistant.class);
+
+        when(openai.threads()).thenReturn(threads);
+        when(threads.create()).thenReturn(hilo);
+        when(threads.messages(hilo)).thenReturn(mock(MessageHandler.class));
+        when(threads.runs(hilo)).thenReturn(runs);
+
+        servicio = new IAService(null, null, null, null);
+        ReflectionTestUtils.setField(servicio, "openai", openai);
+        ReflectionTestUtils.setField(servicio, "esperaInicialMs", 20L);
+        ReflectionTestUtils.setField(servicio, "esperaMaximaMs", 1000L);
+        ReflectionTestUtils.setField(servicio, "timeoutSegundos", 1L);
+    }
+
+    @Test
+    void consultaElEstadoConEsperaCreciente() {
+        Run enCurso = run(RunStatus.IN_PROGRESS);
+        Run completado = run(RunStatus.COMPLETED);
+        when(runs.create(any())).thenReturn(enCurso);
+        when(runs.retrieve(any(Run.class))).thenReturn(enCurso, enCurso, completado);
+        RunStepHandler pasos = mock(RunStepHandler.class);
+        ListRunStepsResponse lista = mock(ListRunStepsResponse.class);
+        when(runs.steps(completado)).thenReturn(pasos);
+        when(pasos.list()).thenReturn(lista);
+        when(lista.getData()).thenReturn(List.of());
+
+        long inicio = System.nanoTime();
+        String texto = ejecutar();
+
+        // Esperas de 20, 30 y 45 ms antes de cada consulta
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)).isGreaterThanOrEqualTo(95);
+        assertThat(texto).isEmpty();
+        verify(runs, times(3)).retrieve(any(Run.class));
+        verify(runs, never()).cancel(any());
+    }
+
+    @Test
+    void alVencerElPlazoCancelaYDevuelve504() {
+        Run enCurso = run(RunStatus.IN_PROGRESS);
+        when(runs.create(any())).thenReturn(enCurso);
+        when(runs.retrieve(any(Run.class))).thenReturn(enCurso);
+
+        assertThatThrownBy(this::ejecutar)
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+        verify(runs).cancel(enCurso);
+    }
+
+    @Test
+    void ejecucionNoCompletadaDevuelve502() {
+        Run enCola = run(RunStatus.QUEUED);
+        Run fallido = run(RunStatus.FAILED);
+        when(runs.create(any())).thenReturn(enCola);
+        when(runs.retrieve(any(Run.class))).thenReturn(fallido);
+
+        assertThatThrownBy(this::ejecutar)
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY));
+        verify(runs, never()).cancel(any());
+    }
+
+    private String ejecutar() {
+        return ReflectionTestUtils.invokeMethod(servicio, "ejecutarAsistente", asistente, "RgstrAlim pan 100");
+    }
+
+    private static Run run(RunStatus estado) {
+        Run run = mock(Run.class);
+        when(run.getId()).thenReturn("run_" + estado);
+        when(run.getStatus()).thenReturn(estado);
+        return run;
+    }
+}
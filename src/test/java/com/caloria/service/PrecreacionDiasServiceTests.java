@@ -0,0 +1,131 @@
+package com.caloria.service;
+
+import com.caloria.model.Dia;
+import com.caloria.model.Macros;
+import com.caloria.model.RegistroComida;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Un día creado por un registro de comida debe encontrarlo la pre-creación del
+ * día siguiente ({@code PrecreacionDiasService.precrear}).
+ *
+ * Las consultas y actualizaciones se capturan con un {@link MongoTemplate} simulado
+ * y se convierten a BSON con los mismos conversores de Spring Data que usa el
+ * servidor; cada conversión se hace con la fecha del sistema del día en que se
+ * ejecutaría.
+ */
+class PrecreacionDiasServiceTests {
+
+    private static final LocalDate AYER = LocalDate.of(2026, 3, 9);
+    private static final LocalDate HOY  = AYER.plusDays(1);
+
+    private MongoTemplate mongoTemplate;
+    private QueryMapper queryMapper;
+    private UpdateMapper updateMapper;
+    private MongoPersistentEntity<?> entidad;
+
+    @BeforeEach
+    void preparar() {
+        mongoTemplate = mock(MongoTemplate.class);
+
+        // Conversores por defecto de Spring Boot
+        MongoCustomConversions conversiones = new MongoCustomConversions(List.of());
+        MongoMappingContext contexto = new MongoMappingContext();
+        contexto.setSimpleTypeHolder(conversiones.getSimpleTypeHolder());
+        MappingMongoConverter conversor = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, contexto);
+        conversor.setCustomConversions(conversiones);
+        conversor.afterPropertiesSet();
+        queryMapper  = new QueryMapper(conversor);
+        updateMapper = new UpdateMapper(conversor);
+        entidad      = contexto.getRequiredPersistentEntity(Dia.class);
+    }
+
+    @Test
+    void encuentraElDiaEscritoLaJornadaAnterior() {
+        // Ayer: el primer registro de la jornada crea el día
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), eq(Dia.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, new BsonObjectId()));
+        new DiaService(mongoTemplate, mock(Environment.class), new SimpleMeterRegistry()).aplicarRegistro(registro());
+
+        ArgumentCaptor<Query> filtro = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).upsert(filtro.capture(), update.capture(), eq(Dia.class));
+        Document guardado = conFecha(AYER, () -> {
+            Document dia = new Document(queryMapper.getMappedObject(filtro.getValue().getQueryObject(), entidad));
+            dia.remove("aplicados");
+            dia.putAll(updateMapper.getMappedObject(update.getValue().getUpdateObject(), entidad)
+                                   .get("$setOnInsert", Document.class));
+            return dia;
+        });
+
+        // Hoy, antes de las 04:00: la pre-creación busca los días de ayer con ese inicio
+        when(mongoTemplate.stream(any(Query.class), eq(Dia.class))).thenReturn(Stream.empty());
+        new PrecreacionDiasService(mongoTemplate, new SimpleMeterRegistry()).precrear(LocalTime.of(4, 0), HOY);
+
+        ArgumentCaptor<Query> activos = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(activos.capture(), eq(Dia.class));
+        Document consulta = conFecha(HOY, () -> queryMapper.getMappedObject(activos.getValue().getQueryObject(), entidad));
+
+        assertThat(consulta).containsOnlyKeys("fecha", "horaInicioDia");
+        assertThat(guardado).containsEntry("fecha", consulta.get("fecha"))
+                            .containsEntry("horaInicioDia", consulta.get("horaInicioDia"));
+        assertThat(guardado.get("horaInicioDia")).isEqualTo("04:00");
+    }
+
+    private static RegistroComida registro() {
+        Macros totales = new Macros();
+        totales.setProteinasG(10);
+        RegistroComida registro = new RegistroComida();
+        registro.setId("comida-1");
+        registro.setUsuarioId("usuario-1");
+        registro.setFechaDiaNutricional(AYER.toString());
+        registro.setHoraInicioDia("04:00");
+        registro.setTotales(totales);
+        registro.setCaloriasTotales(40);
+        return registro;
+    }
+
+    /**
+     * Ejecuta la conversión con {@code fecha} como fecha del sistema.
+     */
+    private static Document conFecha(LocalDate fecha, Supplier<Document> conversion) {
+        try (MockedStatic<LocalDate> hoy = mockStatic(LocalDate.class, CALLS_REAL_METHODS)) {
+            hoy.when(LocalDate::now).thenReturn(fecha);
+            return conversion.get();
+        }
+    }
+}